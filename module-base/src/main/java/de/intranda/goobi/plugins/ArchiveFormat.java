@@ -0,0 +1,77 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * The container format of the archive created per process
+ */
+public enum ArchiveFormat {
+
+	/** zip file, entries are compressed individually */
+	ZIP("zip"),
+	/** uncompressed tar file */
+	TAR("tar"),
+	/** tar file compressed with gzip */
+	TAR_GZ("tar.gz"),
+	/** tar file compressed with Zstandard, requires the zstd-jni library */
+	TAR_ZST("tar.zst");
+
+	// checked by name, so that the library is not loaded by this class
+	private static final String ZSTD_CLASS = "com.github.luben.zstd.ZstdOutputStream";
+
+	private final String name;
+
+	private ArchiveFormat(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return false if a library needed by the format is not installed
+	 */
+	public boolean isAvailable() {
+		if (this != TAR_ZST) {
+			return true;
+		}
+		try {
+			Class.forName(ZSTD_CLASS, false, ArchiveFormat.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the error message for a format that is not available
+	 */
+	public String getUnavailableMessage() {
+		return "The archive format " + name + " requires the zstd-jni library in the lib folder of Goobi";
+	}
+
+	/**
+	 * @return the file extension including the leading dot
+	 */
+	public String getExtension() {
+		return "." + name;
+	}
+
+	/**
+	 * Parse the configured value
+	 * 
+	 * @param value the configured name, case is ignored
+	 * @param defaultFormat the format to use if the value is empty or unknown
+	 * @return the format
+	 */
+	public static ArchiveFormat getByName(String value, ArchiveFormat defaultFormat) {
+		if (value != null) {
+			for (ArchiveFormat format : values()) {
+				if (format.name.equalsIgnoreCase(value.trim())) {
+					return format;
+				}
+			}
+		}
+		return defaultFormat;
+	}
+
+}
@@ -0,0 +1,162 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+
+import de.sub.goobi.config.ConfigPlugins;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Exports many processes in one job. The plugin configuration is read once per project and step, rulesets are parsed
+ * once and all processes share the same worker pools, so that the number of files copied at the same time is limited
+ * for the whole batch. The status of the steps is not changed, this is left to the caller.
+ */
+@Log4j2
+public class BatchExporter {
+
+	private final int processThreads;
+	private final int copyThreads;
+	private final Map<String, SubnodeConfiguration> configurations = new ConcurrentHashMap<>();
+
+	/**
+	 * @param processThreads the number of processes to export at the same time
+	 * @param copyThreads the number of files to copy at the same time for all processes together
+	 */
+	public BatchExporter(int processThreads, int copyThreads) {
+		this.processThreads = Math.max(1, processThreads);
+		this.copyThreads = Math.max(1, copyThreads);
+	}
+
+	/**
+	 * Export the processes with the configuration of the given step
+	 * 
+	 * @param processes the processes to export
+	 * @param stepTitle the title of the export step within the processes
+	 * @return the results in the order of the processes
+	 * @throws InterruptedException
+	 */
+	public List<ProcessResult> export(List<Process> processes, String stepTitle) throws InterruptedException {
+		List<Step> processSteps = new ArrayList<>();
+		List<Step> steps = new ArrayList<>();
+		for (Process process : processes) {
+			Step step = getStep(process, stepTitle);
+			processSteps.add(step);
+			if (step != null) {
+				steps.add(step);
+			}
+		}
+		// the results of the exported steps are in the same order as the processes that have the step
+		Iterator<ProcessResult> exported = exportSteps(steps).iterator();
+		List<ProcessResult> results = new ArrayList<>();
+		for (int i = 0; i < processes.size(); i++) {
+			Process process = processes.get(i);
+			if (processSteps.get(i) == null) {
+				results.add(new ProcessResult(process.getId(), process.getTitel(), PluginReturnValue.ERROR, 0,
+						"Process has no step " + stepTitle));
+			} else {
+				results.add(exported.next());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Export the processes of the steps, each with the configuration of its step
+	 * 
+	 * @param steps the export steps
+	 * @return the results in the order of the steps
+	 * @throws InterruptedException
+	 */
+	public List<ProcessResult> exportSteps(List<Step> steps) throws InterruptedException {
+		List<ProcessResult> results = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(processThreads);
+		try (ExportResources resources = new ExportResources(copyThreads, processThreads * 2)) {
+			List<Future<ProcessResult>> futures = new ArrayList<>();
+			for (Step step : steps) {
+				futures.add(executor.submit(() -> export(step, resources)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				Process process = steps.get(i).getProzess();
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					log.error("Export of process {} failed", process.getId(), e.getCause());
+					results.add(new ProcessResult(process.getId(), process.getTitel(), PluginReturnValue.ERROR, 0,
+							String.valueOf(e.getCause().getMessage())));
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		long failed = results.stream().filter(r -> !r.isSuccessful()).count();
+		log.info("Batch export finished: {} processes exported, {} failed", results.size() - failed, failed);
+		return results;
+	}
+
+	private ProcessResult export(Step step, ExportResources resources) {
+		Process process = step.getProzess();
+		long start = System.currentTimeMillis();
+		ExportPackageStepPlugin plugin = new ExportPackageStepPlugin();
+		SubnodeConfiguration config = configurations.computeIfAbsent(
+				process.getProjekt().getTitel() + "\t" + step.getTitel(),
+				k -> ConfigPlugins.getProjectAndStepConfig(plugin.getTitle(), step));
+		plugin.initialize(step, "", config);
+		plugin.setResources(resources);
+		PluginReturnValue returnValue = plugin.runExport();
+		// there are no statistics, if the export was interrupted before it started
+		ExportStatistics statistics = plugin.getExportStatistics();
+		String message = statistics == null ? "Export not started: " + returnValue : statistics.getSummary();
+		return new ProcessResult(process.getId(), process.getTitel(), returnValue, System.currentTimeMillis() - start,
+				message);
+	}
+
+	private static Step getStep(Process process, String stepTitle) {
+		for (Step step : process.getSchritte()) {
+			if (stepTitle.equals(step.getTitel())) {
+				return step;
+			}
+		}
+		return null;
+	}
+
+	public static class ProcessResult {
+		@Getter
+		private final Integer processId;
+		@Getter
+		private final String processTitle;
+		@Getter
+		private final PluginReturnValue returnValue;
+		@Getter
+		private final long durationMillis;
+		/** the export statistics or the error message */
+		@Getter
+		private final String message;
+
+		public ProcessResult(Integer processId, String processTitle, PluginReturnValue returnValue, long durationMillis,
+				String message) {
+			this.processId = processId;
+			this.processTitle = processTitle;
+			this.returnValue = returnValue;
+			this.durationMillis = durationMillis;
+			this.message = message;
+		}
+
+		public boolean isSuccessful() {
+			return returnValue != PluginReturnValue.ERROR;
+		}
+	}
+
+}
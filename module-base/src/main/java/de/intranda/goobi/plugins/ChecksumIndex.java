@@ -0,0 +1,159 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checksums of all image folders of a process, read once from the checksum files in the validation folder. The same
+ * index is used to validate the exported folders and to add the checksums to the METS file. The index is not modified
+ * after it was built and can be used by several threads.
+ */
+public class ChecksumIndex {
+
+	private final Map<String, Path> checksumFiles = new HashMap<>();
+	private final Map<String, Map<String, String>> checksums = new HashMap<>();
+	private final Map<String, Map<String, String>> checksumsByBaseName = new HashMap<>();
+
+	/**
+	 * Read the checksum files of the given folders
+	 * 
+	 * @param files the available checksum files
+	 * @param extension the extension of the checksum files, e.g. .sha1
+	 * @param folderNames the names of the folders to read, checksum files of other folders are ignored
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static ChecksumIndex read(Collection<Path> files, String extension, Collection<String> folderNames)
+			throws IOException {
+		ChecksumIndex index = new ChecksumIndex();
+		for (Path file : files) {
+			String folderName = file.getFileName().toString().replace(extension, "");
+			if (folderNames.contains(folderName) && !index.checksumFiles.containsKey(folderName)) {
+				Map<String, String> folderChecksums = parse(file);
+				index.checksumFiles.put(folderName, file);
+				index.checksums.put(folderName, Collections.unmodifiableMap(folderChecksums));
+				index.checksumsByBaseName.put(folderName, Collections.unmodifiableMap(toBaseNames(folderChecksums)));
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @param folderName the name of the image folder
+	 * @return the checksum file of the folder or null, if the folder has none
+	 */
+	public Path getChecksumFile(String folderName) {
+		return checksumFiles.get(folderName);
+	}
+
+	/**
+	 * @param folderName the name of the image folder
+	 * @return map of file name to checksum, null if the folder has no checksum file
+	 */
+	public Map<String, String> getChecksums(String folderName) {
+		return checksums.get(folderName);
+	}
+
+	/**
+	 * @param folderName the name of the image folder
+	 * @return map of file name without extension to checksum as used in the METS file, null if the folder has no
+	 *         checksum file
+	 */
+	public Map<String, String> getChecksumsByBaseName(String folderName) {
+		return checksumsByBaseName.get(folderName);
+	}
+
+	/**
+	 * Read a checksum file as created by sha1sum or md5sum. The file is scanned as bytes, only the file names and
+	 * checksums are decoded into strings.
+	 * 
+	 * @param checksumFile the file to read
+	 * @return map of file name to checksum in the order of the file
+	 * @throws IOException
+	 */
+	public static Map<String, String> parse(Path checksumFile) throws IOException {
+		Map<String, String> result = new LinkedHashMap<>();
+		byte[] buffer = new byte[ChecksumVerifier.BUFFER_SIZE];
+		int length = 0;
+		try (InputStream in = Files.newInputStream(checksumFile)) {
+			int read;
+			while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+				length += read;
+				int start = parseLines(buffer, length, false, result);
+				// keep the incomplete last line for the next read
+				length -= start;
+				System.arraycopy(buffer, start, buffer, 0, length);
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+			}
+			parseLines(buffer, length, true, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the offset of the first byte that does not belong to a complete line
+	 */
+	private static int parseLines(byte[] buffer, int length, boolean last, Map<String, String> result) {
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] == '\n') {
+				parseLine(buffer, start, i, result);
+				start = i + 1;
+			}
+		}
+		if (last && start < length) {
+			parseLine(buffer, start, length, result);
+			start = length;
+		}
+		return start;
+	}
+
+	private static void parseLine(byte[] buffer, int start, int end, Map<String, String> result) {
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		if (start == end || buffer[start] == '#') {
+			return;
+		}
+		int separator = start;
+		while (separator < end && buffer[separator] != ' ') {
+			separator++;
+		}
+		// checksum, a space and a space or * for the binary mode, followed by the file name
+		int nameStart = separator + 2;
+		if (separator == start || nameStart >= end) {
+			return;
+		}
+		if (end - nameStart >= 2 && buffer[nameStart] == '.' && buffer[nameStart + 1] == '/') {
+			nameStart += 2;
+		}
+		result.put(new String(buffer, nameStart, end - nameStart, StandardCharsets.UTF_8),
+				new String(buffer, start, separator - start, StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * @param checksums map of file name to checksum
+	 * @return map of file name without extension to checksum
+	 */
+	static Map<String, String> toBaseNames(Map<String, String> checksums) {
+		Map<String, String> result = new HashMap<>();
+		for (Map.Entry<String, String> entry : checksums.entrySet()) {
+			String fileName = entry.getKey();
+			int extension = fileName.lastIndexOf('.');
+			result.put(extension > 0 ? fileName.substring(0, extension) : fileName, entry.getValue());
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,57 @@
+package de.intranda.goobi.plugins;
+
+import static de.intranda.goobi.plugins.MetsRewritePipeline.mets;
+import static de.intranda.goobi.plugins.MetsRewritePipeline.xlink;
+
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.jdom2.Element;
+
+/**
+ * Adds @CHECKSUM and @CHECKSUMTYPE to each mets:file of the configured file groups
+ */
+public class ChecksumRewriteStep implements MetsRewriteStep {
+
+	// file group name (@USE) -> file name without extension -> checksum
+	private final Map<String, Map<String, String>> checksumsPerFileGroup;
+	private final String checksumType;
+
+	public ChecksumRewriteStep(Map<String, Map<String, String>> checksumsPerFileGroup, String checksumType) {
+		this.checksumsPerFileGroup = checksumsPerFileGroup;
+		this.checksumType = checksumType;
+	}
+
+	@Override
+	public void apply(Element root) {
+		Element fileSec = root.getChild("fileSec", mets);
+		for (Element fileGroup : fileSec.getChildren()) {
+			Map<String, String> filesAndChecksums = checksumsPerFileGroup.get(fileGroup.getAttributeValue("USE"));
+			if (filesAndChecksums == null) {
+				continue;
+			}
+			// add checksum + type for each file element
+			for (Element file : fileGroup.getChildren()) {
+				Element location = file.getChild("FLocat", mets);
+				String ref = location.getAttributeValue("href", xlink);
+				String checksum = filesAndChecksums.get(getBasename(ref));
+				if (StringUtils.isNotBlank(checksum)) {
+					file.setAttribute("CHECKSUMTYPE", checksumType);
+					file.setAttribute("CHECKSUM", checksum);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the file name of a link without path and extension
+	 * 
+	 * @param ref the xlink:href of a mets:FLocat
+	 * @return the base name of the linked file
+	 */
+	static String getBasename(String ref) {
+		String filename = ref.contains("/") ? ref.substring(ref.lastIndexOf("/") + 1) : ref;
+		return filename.contains(".") ? filename.substring(0, filename.lastIndexOf(".")) : filename;
+	}
+
+}
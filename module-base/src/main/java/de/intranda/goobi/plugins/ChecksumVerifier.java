@@ -0,0 +1,158 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Verifies exported files against a checksum file as created by sha1sum or md5sum. The files are hashed in parallel
+ * within the JVM, the result contains the names of all files that do not match.
+ */
+@Log4j2
+public class ChecksumVerifier {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String algorithm;
+	private final int threads;
+
+	/**
+	 * @param checksumType the configured checksum type, e.g. SHA-1 or MD5
+	 * @param threads the maximum number of files to hash in parallel
+	 */
+	public ChecksumVerifier(String checksumType, int threads) {
+		this.algorithm = getDigestAlgorithm(checksumType);
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Check all files listed in the checksum file
+	 * 
+	 * @param checksumFile the checksum file
+	 * @param folder the folder containing the files to check
+	 * @return the names of all files that are missing or have a different checksum, the list is empty if everything
+	 *         is valid
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public List<String> verify(Path checksumFile, Path folder) throws IOException, InterruptedException {
+		Map<String, String> manifest = readManifest(checksumFile);
+		return verify(manifest, folder, manifest.keySet());
+	}
+
+	/**
+	 * Check the given files only
+	 * 
+	 * @param manifest map of file name to expected checksum
+	 * @param folder the folder containing the files to check
+	 * @param fileNames the files to check
+	 * @return the names of all files that are missing or have a different checksum
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public List<String> verify(Map<String, String> manifest, Path folder, Collection<String> fileNames)
+			throws IOException, InterruptedException {
+		List<String> mismatches = new ArrayList<>();
+		if (fileNames.isEmpty()) {
+			return mismatches;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, fileNames.size()));
+		try {
+			Map<String, Future<String>> results = new LinkedHashMap<>();
+			for (String fileName : fileNames) {
+				Path file = folder.resolve(fileName);
+				results.put(fileName, executor.submit(() -> Files.isRegularFile(file) ? hash(file, algorithm) : null));
+			}
+			for (Map.Entry<String, Future<String>> result : results.entrySet()) {
+				String actual = result.getValue().get();
+				if (actual == null || !actual.equalsIgnoreCase(manifest.get(result.getKey()))) {
+					log.debug("Checksum mismatch for {}", result.getKey());
+					mismatches.add(result.getKey());
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Read a checksum file in the format of the GNU coreutils ('checksum  name' or 'checksum *name')
+	 * 
+	 * @param checksumFile the file to read
+	 * @return map of file name to checksum, in the order of the file
+	 * @throws IOException
+	 */
+	public static Map<String, String> readManifest(Path checksumFile) throws IOException {
+		return ChecksumIndex.parse(checksumFile);
+	}
+
+	/**
+	 * Calculate the checksum of a file
+	 * 
+	 * @param file the file to read
+	 * @param algorithm the name of the {@link MessageDigest} algorithm
+	 * @return the checksum as lower case hex string
+	 * @throws IOException
+	 */
+	public static String hash(Path file, String algorithm) throws IOException {
+		MessageDigest digest = getMessageDigest(algorithm);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = IoGovernor.getInstance().newInputStream(file)) {
+			int length;
+			while ((length = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, length);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	static MessageDigest getMessageDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("Unsupported checksum type " + algorithm, e);
+		}
+	}
+
+	/**
+	 * Map the configured checksum type to the name of the {@link MessageDigest} algorithm, e.g. 'sha1' to 'SHA-1'
+	 * 
+	 * @param checksumType the configured checksum type
+	 * @return the name of the algorithm
+	 */
+	static String getDigestAlgorithm(String checksumType) {
+		String type = checksumType.trim().toUpperCase();
+		if (type.matches("SHA\\d+")) {
+			type = "SHA-" + type.substring(3);
+		}
+		return type;
+	}
+
+	static String toHex(byte[] bytes) {
+		char[] hexDigits = "0123456789abcdef".toCharArray();
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 2] = hexDigits[(bytes[i] >> 4) & 0x0f];
+			hex[i * 2 + 1] = hexDigits[bytes[i] & 0x0f];
+		}
+		return new String(hex);
+	}
+
+}
@@ -0,0 +1,104 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Content addressed store for exported files. Each file is stored once under its checksum, the packages reference the
+ * stored files with hard links. Exporting the same images into several packages then reads and writes them only once.
+ * Stored files are read only, as all their hard links share the same data.
+ * <p>
+ * Layout: <code>&lt;root&gt;/&lt;checksum type&gt;/&lt;first two characters&gt;/&lt;checksum&gt;</code>
+ */
+public class ContentStore {
+
+	@Getter
+	private final Path root;
+	private final Path folder;
+	private final Path tempFolder;
+	private final String checksumType;
+	private final AtomicLong storedFiles = new AtomicLong();
+	private final AtomicLong reusedFiles = new AtomicLong();
+
+	/**
+	 * @param root the folder of the store, it should be on the file system of the export targets
+	 * @param checksumType the checksum type the files are stored with, e.g. SHA-1
+	 * @throws IOException
+	 */
+	public ContentStore(Path root, String checksumType) throws IOException {
+		this.root = root;
+		this.checksumType = checksumType;
+		this.folder = root.resolve(checksumType.toLowerCase(Locale.ROOT).replace("-", ""));
+		this.tempFolder = root.resolve("tmp");
+		Files.createDirectories(tempFolder);
+	}
+
+	/**
+	 * @param checksum the checksum of the content
+	 * @return the location of the content in the store, it may not exist
+	 */
+	public Path getFile(String checksum) {
+		String name = checksum.toLowerCase(Locale.ROOT);
+		return folder.resolve(name.substring(0, Math.min(2, name.length()))).resolve(name);
+	}
+
+	/**
+	 * Make sure the content of a file is in the store. A missing file is copied into the store and its checksum is
+	 * verified while copying, so that a wrong checksum never points to other content.
+	 *
+	 * @param source the file to store
+	 * @param checksum the expected checksum of the file
+	 * @return the stored file
+	 * @throws IOException if the file does not match the checksum or can't be stored
+	 */
+	public Path add(Path source, String checksum) throws IOException {
+		Path stored = getFile(checksum);
+		if (Files.isRegularFile(stored)) {
+			reusedFiles.incrementAndGet();
+			return stored;
+		}
+		// the file is written under a temporary name and then moved, other exports never see a partial file
+		Path temp = tempFolder.resolve(UUID.randomUUID().toString());
+		try {
+			String actual = new HashingCopier(checksumType).copyFile(source, temp);
+			if (!actual.equalsIgnoreCase(checksum)) {
+				throw new IOException("Checksum mismatch for " + source + ": expected " + checksum + ", got " + actual);
+			}
+			temp.toFile().setReadOnly();
+			Files.createDirectories(stored.getParent());
+			try {
+				Files.move(temp, stored, StandardCopyOption.ATOMIC_MOVE);
+				storedFiles.incrementAndGet();
+			} catch (FileAlreadyExistsException e) {
+				// stored by another export in the meantime
+				reusedFiles.incrementAndGet();
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		return stored;
+	}
+
+	/**
+	 * @return the number of files copied into the store by this instance
+	 */
+	public long getStoredFiles() {
+		return storedFiles.get();
+	}
+
+	/**
+	 * @return the number of files that were already in the store
+	 */
+	public long getReusedFiles() {
+		return reusedFiles.get();
+	}
+
+}
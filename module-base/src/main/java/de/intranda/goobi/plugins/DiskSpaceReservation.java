@@ -0,0 +1,128 @@
+package de.intranda.goobi.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Space on a file system that is reserved for a running export. The reservations of all exports of the application are
+ * subtracted from the free space, so that concurrent exports can't pass the free space check for the same space. The
+ * reservation shrinks while the export writes its data.
+ */
+public class DiskSpaceReservation implements Closeable {
+
+	private static final Map<FileStore, Long> RESERVED = new HashMap<>();
+
+	@Getter
+	private final FileStore fileStore;
+	@Getter
+	private final long bytes;
+	// the part of the reservation that is not written yet
+	private long remaining;
+
+	private DiskSpaceReservation(FileStore fileStore, long bytes) {
+		this.fileStore = fileStore;
+		this.bytes = bytes;
+		this.remaining = bytes;
+	}
+
+	/**
+	 * Reserve space on a file system, if enough space is available
+	 * 
+	 * @param fileStore the file system
+	 * @param bytes the space to reserve
+	 * @param minimumFreeBytes space that must remain free after the reservation
+	 * @return the reservation or null, if there is not enough space left
+	 * @throws IOException
+	 */
+	public static DiskSpaceReservation reserve(FileStore fileStore, long bytes, long minimumFreeBytes)
+			throws IOException {
+		long usable = fileStore.getUsableSpace();
+		synchronized (RESERVED) {
+			long reserved = RESERVED.getOrDefault(fileStore, 0L);
+			if (usable - reserved - minimumFreeBytes < bytes) {
+				return null;
+			}
+			RESERVED.put(fileStore, reserved + bytes);
+		}
+		return new DiskSpaceReservation(fileStore, bytes);
+	}
+
+	/**
+	 * @param fileStore the file system
+	 * @return the free space of the file system that is not reserved by running exports
+	 * @throws IOException
+	 */
+	public static long getAvailable(FileStore fileStore) throws IOException {
+		long usable = fileStore.getUsableSpace();
+		synchronized (RESERVED) {
+			return usable - RESERVED.getOrDefault(fileStore, 0L);
+		}
+	}
+
+	/**
+	 * Reduce the reservation by data the export has written. Written data already reduces the free space of the file
+	 * system, so it must no longer be reserved.
+	 * 
+	 * @param writtenBytes the number of bytes written since the last call
+	 */
+	public void written(long writtenBytes) {
+		synchronized (RESERVED) {
+			release(Math.min(remaining, Math.max(0, writtenBytes)));
+		}
+	}
+
+	/**
+	 * @return the part of the reservation that is not written yet
+	 */
+	public long getRemaining() {
+		synchronized (RESERVED) {
+			return remaining;
+		}
+	}
+
+	/**
+	 * Find the file system of a path, that may not exist yet
+	 * 
+	 * @param path the file or folder
+	 * @return the file system of the nearest existing parent
+	 * @throws IOException
+	 */
+	public static FileStore getFileStore(Path path) throws IOException {
+		Path existing = path.toAbsolutePath();
+		while (existing.getParent() != null && !Files.exists(existing)) {
+			existing = existing.getParent();
+		}
+		return Files.getFileStore(existing);
+	}
+
+	/**
+	 * Release the reserved space, the export has either written it or failed
+	 */
+	@Override
+	public void close() {
+		synchronized (RESERVED) {
+			release(remaining);
+		}
+	}
+
+	private void release(long releasedBytes) {
+		if (releasedBytes <= 0) {
+			return;
+		}
+		remaining -= releasedBytes;
+		long reserved = RESERVED.getOrDefault(fileStore, 0L) - releasedBytes;
+		if (reserved > 0) {
+			RESERVED.put(fileStore, reserved);
+		} else {
+			RESERVED.remove(fileStore);
+		}
+	}
+
+}
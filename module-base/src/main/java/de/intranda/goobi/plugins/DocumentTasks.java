@@ -0,0 +1,89 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerException;
+
+import org.jdom2.JDOMException;
+
+/**
+ * The tasks of an export that generate files in the package: the METS rewrite, the XSLT transformations and the OCR
+ * bundles. They run in the background while the folders are copied and must all be finished before the package is
+ * archived.
+ */
+public class DocumentTasks {
+
+	private final ExecutorService executor;
+	private final boolean sharedExecutor;
+	private final List<Future<Void>> tasks = new ArrayList<>();
+
+	/**
+	 * @param executor the executor to run the tasks
+	 * @param sharedExecutor true if the executor is shared with other exports and must not be shut down
+	 */
+	public DocumentTasks(ExecutorService executor, boolean sharedExecutor) {
+		this.executor = executor;
+		this.sharedExecutor = sharedExecutor;
+	}
+
+	/**
+	 * Start a task in the background
+	 *
+	 * @param task the task to start
+	 */
+	public void submit(Callable<Void> task) {
+		tasks.add(executor.submit(task));
+	}
+
+	/**
+	 * Wait until all tasks are finished. The error of the first failed task is thrown, the package must not be archived
+	 * then.
+	 *
+	 * @throws IOException
+	 * @throws TransformerException
+	 * @throws JDOMException
+	 * @throws XMLStreamException
+	 */
+	public void await() throws IOException, TransformerException, JDOMException, XMLStreamException {
+		for (Future<Void> task : tasks) {
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof TransformerException) {
+					throw (TransformerException) cause;
+				} else if (cause instanceof JDOMException) {
+					throw (JDOMException) cause;
+				} else if (cause instanceof XMLStreamException) {
+					throw (XMLStreamException) cause;
+				}
+				throw new IOException(cause.getMessage(), cause);
+			}
+		}
+	}
+
+	/**
+	 * Cancel the remaining tasks. The executor is only shut down, if it is not shared with other exports.
+	 */
+	public void stop() {
+		for (Future<Void> task : tasks) {
+			task.cancel(true);
+		}
+		if (!sharedExecutor) {
+			executor.shutdownNow();
+		}
+	}
+
+}
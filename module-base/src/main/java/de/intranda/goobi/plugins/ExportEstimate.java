@@ -0,0 +1,193 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.Getter;
+
+/**
+ * Number of files and bytes of an {@link ExportPlan}, determined before anything is written. The sizes of the files are
+ * read on several threads, as this is dominated by the latency of the storage.
+ */
+public class ExportEstimate {
+
+	private final Map<ExportPlan.Entry, Long> sizes;
+	private final Map<ExportPlan.Entry, Long> writeSizes;
+	@Getter
+	private final long files;
+	@Getter
+	private final long bytes;
+	/** bytes that actually need new space on the target, without files that are already there or hard linked */
+	@Getter
+	private final long bytesToWrite;
+
+	private ExportEstimate(Map<ExportPlan.Entry, Long> sizes, Map<ExportPlan.Entry, Long> writeSizes, long files,
+			long bytes, long bytesToWrite) {
+		this.sizes = sizes;
+		this.writeSizes = writeSizes;
+		this.files = files;
+		this.bytes = bytes;
+		this.bytesToWrite = bytesToWrite;
+	}
+
+	/**
+	 * Read the sizes of all files of the plan
+	 * 
+	 * @param plan the files to export
+	 * @param threads the number of threads reading the sizes, 1 reads them on the calling thread
+	 * @param targetStore the file system of the destination, used to detect hard links that don't need space, can
+	 *            be null
+	 * @return the estimate
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static ExportEstimate calculate(ExportPlan plan, int threads, FileStore targetStore)
+			throws IOException, InterruptedException {
+		List<ExportPlan.Entry> entries = plan.getEntries();
+		int partitions = Math.max(1, Math.min(threads, entries.size()));
+		if (partitions == 1) {
+			return new Partition(entries, targetStore).call();
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(partitions);
+		try {
+			List<Future<ExportEstimate>> futures = new ArrayList<>();
+			int partitionSize = (entries.size() + partitions - 1) / partitions;
+			for (int start = 0; start < entries.size(); start += partitionSize) {
+				List<ExportPlan.Entry> partition = entries.subList(start, Math.min(entries.size(), start + partitionSize));
+				futures.add(executor.submit(() -> new Partition(partition, targetStore).call()));
+			}
+			Map<ExportPlan.Entry, Long> sizes = new IdentityHashMap<>();
+			Map<ExportPlan.Entry, Long> writeSizes = new IdentityHashMap<>();
+			long files = 0;
+			long bytes = 0;
+			long bytesToWrite = 0;
+			for (Future<ExportEstimate> future : futures) {
+				ExportEstimate estimate = getResult(future);
+				sizes.putAll(estimate.sizes);
+				writeSizes.putAll(estimate.writeSizes);
+				files += estimate.files;
+				bytes += estimate.bytes;
+				bytesToWrite += estimate.bytesToWrite;
+			}
+			return new ExportEstimate(sizes, writeSizes, files, bytes, bytesToWrite);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static ExportEstimate getResult(Future<ExportEstimate> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * @param entry an entry of the estimated plan
+	 * @return the size of the source file or 0 for directories and unknown entries
+	 */
+	public long getSize(ExportPlan.Entry entry) {
+		Long size = sizes.get(entry);
+		return size == null ? 0 : size;
+	}
+
+	/**
+	 * @param entry an entry of the estimated plan
+	 * @return the new space the entry needs on the target, 0 for hard links and unknown entries
+	 */
+	public long getBytesToWrite(ExportPlan.Entry entry) {
+		Long size = writeSizes.get(entry);
+		return size == null ? 0 : size;
+	}
+
+	/**
+	 * @param plan the estimated plan or a filtered part of it
+	 * @return the number of files of the plan without directories
+	 */
+	public long getFiles(ExportPlan plan) {
+		return plan.getEntries().stream().filter(entry -> !entry.isDirectory()).count();
+	}
+
+	/**
+	 * @param plan the estimated plan or a filtered part of it
+	 * @return the summed up size of the files of the plan
+	 */
+	public long getBytes(ExportPlan plan) {
+		long result = 0;
+		for (ExportPlan.Entry entry : plan.getEntries()) {
+			result += getSize(entry);
+		}
+		return result;
+	}
+
+	private static class Partition {
+		private final List<ExportPlan.Entry> entries;
+		private final FileStore targetStore;
+		// the file system is looked up once per source folder
+		private final Map<Path, FileStore> sourceStores = new HashMap<>();
+
+		private Partition(List<ExportPlan.Entry> entries, FileStore targetStore) {
+			this.entries = entries;
+			this.targetStore = targetStore;
+		}
+
+		private ExportEstimate call() throws IOException {
+			Map<ExportPlan.Entry, Long> sizes = new IdentityHashMap<>();
+			Map<ExportPlan.Entry, Long> writeSizes = new IdentityHashMap<>();
+			long files = 0;
+			long bytes = 0;
+			long bytesToWrite = 0;
+			for (ExportPlan.Entry entry : entries) {
+				if (entry.isDirectory()) {
+					continue;
+				}
+				long size = Files.size(entry.getSource());
+				sizes.put(entry, size);
+				files++;
+				bytes += size;
+				if (isLinked(entry)) {
+					continue;
+				}
+				// an existing file is replaced, so its space is reused
+				long existing = Files.isRegularFile(entry.getTarget()) ? Files.size(entry.getTarget()) : 0;
+				long writeSize = Math.max(0, size - existing);
+				writeSizes.put(entry, writeSize);
+				bytesToWrite += writeSize;
+			}
+			return new ExportEstimate(sizes, writeSizes, files, bytes, bytesToWrite);
+		}
+
+		/**
+		 * Hard links on the same file system share the data blocks with the source. Reflinks are counted as copies, as
+		 * they fall back to a copy on file systems without copy on write.
+		 */
+		private boolean isLinked(ExportPlan.Entry entry) throws IOException {
+			if (targetStore == null || entry.getTransferStrategy() != TransferStrategy.HARDLINK) {
+				return false;
+			}
+			Path folder = entry.getSource().toAbsolutePath().getParent();
+			FileStore store = sourceStores.get(folder);
+			if (store == null) {
+				store = Files.getFileStore(folder);
+				sourceStores.put(folder, store);
+			}
+			return targetStore.equals(store);
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * Checkpoint journal of an export, stored in the process data directory. The completed phases and all exported files
+ * are appended as soon as they are done, so that an interrupted export can be resumed without copying the exported
+ * files again. A journal is only used again for the same export key and checksum type. The key is built from the
+ * unresolved destination, so that an export into a folder with a timestamp or another variable in its name is resumed
+ * into the folder of the interrupted export.
+ */
+public class ExportJournal implements Closeable {
+
+	public static final String FILE_NAME = "exportPackage.journal";
+
+	private static final String DESTINATION = "destination";
+	private static final String TARGET = "target";
+	private static final String PHASE = "phase";
+	private static final String FILE = "file";
+	private static final String UNKNOWN_DIGEST = "-";
+
+	private final Path file;
+	private final Set<String> completedPhases = new HashSet<>();
+	@Getter
+	private final PackageManifest exportedFiles;
+	@Getter
+	private boolean resumed;
+	/** the destination folder of the export, for a resumed export the folder of the interrupted export */
+	@Getter
+	private Path destination;
+	private BufferedWriter writer;
+
+	private ExportJournal(Path file, String checksumType) {
+		this.file = file;
+		this.exportedFiles = new PackageManifest(checksumType);
+	}
+
+	/**
+	 * Open the journal of an export. If the journal of an interrupted export with the same key exists, its content and
+	 * destination are kept, otherwise a new journal is started.
+	 * 
+	 * @param file the journal file
+	 * @param key identifies the export, e.g. the process id and the destination before variables are replaced
+	 * @param destination the destination folder of a new export
+	 * @param checksumType the checksum type of the recorded digests
+	 * @return the opened journal
+	 * @throws IOException
+	 */
+	public static ExportJournal open(Path file, String key, Path destination, String checksumType) throws IOException {
+		ExportJournal journal = new ExportJournal(file, checksumType);
+		String header = DESTINATION + "\t" + checksumType + "\t" + key;
+		if (Files.isRegularFile(file)) {
+			journal.read(header);
+		}
+		if (!journal.resumed) {
+			journal.destination = destination.toAbsolutePath().normalize();
+		}
+		// the journal is written again, a line that was cut off by a crash would break the following lines. It is written
+		// under a temporary name and replaces the old journal afterwards, so that a crash can't destroy it.
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			journal.writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+			journal.writeLine(header);
+			journal.writeLine(TARGET + "\t" + journal.destination);
+			for (String phase : journal.completedPhases) {
+				journal.writeLine(PHASE + "\t" + phase);
+			}
+			for (String name : journal.exportedFiles.getNames()) {
+				journal.writeFile(name, journal.exportedFiles.get(name));
+			}
+			journal.close();
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			journal.close();
+			Files.deleteIfExists(temp);
+		}
+		journal.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		return journal;
+	}
+
+	private void read(String header) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			if (line == null || !line.equals(header)) {
+				return;
+			}
+			line = reader.readLine();
+			if (line == null || !line.startsWith(TARGET + "\t")) {
+				return;
+			}
+			destination = Paths.get(line.substring(TARGET.length() + 1));
+			resumed = true;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t", 5);
+				if (parts.length == 2 && PHASE.equals(parts[0])) {
+					completedPhases.add(parts[1]);
+				} else if (parts.length == 5 && FILE.equals(parts[0])) {
+					try {
+						String digest = UNKNOWN_DIGEST.equals(parts[1]) ? null : parts[1];
+						exportedFiles.put(parts[4],
+								new PackageManifest.Record(Long.parseLong(parts[2]), Long.parseLong(parts[3]), digest));
+					} catch (NumberFormatException e) {
+						// incomplete line
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param phase the name of the phase
+	 * @return true if the phase was completed by the interrupted export
+	 */
+	public synchronized boolean isCompleted(String phase) {
+		return completedPhases.contains(phase);
+	}
+
+	/**
+	 * Record a completed phase
+	 * 
+	 * @param phase the name of the phase
+	 * @throws IOException
+	 */
+	public synchronized void complete(String phase) throws IOException {
+		if (completedPhases.add(phase)) {
+			writeLine(PHASE + "\t" + phase);
+		}
+	}
+
+	/**
+	 * Record an exported file with size and modification date of its source
+	 * 
+	 * @param name the path relative to the package folder
+	 * @param source the exported file
+	 * @param digest the checksum of the file or null, if it is not known
+	 * @throws IOException
+	 */
+	public synchronized void fileExported(String name, Path source, String digest) throws IOException {
+		exportedFiles.add(name, source, digest);
+		writeFile(name, exportedFiles.get(name));
+	}
+
+	private void writeFile(String name, PackageManifest.Record record) throws IOException {
+		writeLine(FILE + "\t" + (record.getDigest() == null ? UNKNOWN_DIGEST : record.getDigest()) + "\t"
+				+ record.getSize() + "\t" + record.getLastModified() + "\t" + name);
+	}
+
+	private void writeLine(String line) throws IOException {
+		writer.write(line);
+		writer.newLine();
+		// every line is a checkpoint
+		writer.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	/**
+	 * Close and remove the journal after the export has finished
+	 * 
+	 * @throws IOException
+	 */
+	public void delete() throws IOException {
+		close();
+		Files.deleteIfExists(file);
+	}
+
+}
@@ -0,0 +1,172 @@
+package de.intranda.goobi.plugins;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Application wide totals of all exports, published via JMX as
+ * <code>de.intranda.goobi.plugins:type=ExportPackage</code>.
+ */
+@Log4j2
+public class ExportMetrics implements ExportMetricsMBean {
+
+	static final String OBJECT_NAME = "de.intranda.goobi.plugins:type=ExportPackage";
+
+	private static final ExportMetrics INSTANCE = new ExportMetrics();
+
+	static {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			// a reloaded plugin replaces the bean of the previous class loader
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(INSTANCE, name);
+		} catch (JMException | RuntimeException e) {
+			log.warn("Export metrics could not be registered", e);
+		}
+	}
+
+	private final Map<String, long[]> phases = new LinkedHashMap<>();
+	private long exportCount;
+	private long failedExportCount;
+	private String lastSummary = "";
+	private final Set<ExportProgress> runningExports = new LinkedHashSet<>();
+
+	ExportMetrics() {
+	}
+
+	public static ExportMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Add the statistics of a finished export to the totals
+	 * 
+	 * @param statistics the statistics of the export
+	 * @param successful false if the export failed
+	 */
+	public synchronized void add(ExportStatistics statistics, boolean successful) {
+		exportCount++;
+		if (!successful) {
+			failedExportCount++;
+		}
+		for (ExportStatistics.Phase phase : statistics.getPhases()) {
+			// count, nanoseconds, bytes, files
+			long[] values = phases.computeIfAbsent(phase.getName(), k -> new long[4]);
+			values[0]++;
+			values[1] += phase.getNanos();
+			values[2] += phase.getBytes();
+			values[3] += phase.getFiles();
+		}
+		lastSummary = statistics.getSummary();
+	}
+
+	/**
+	 * Publish the progress of an export that is started
+	 * 
+	 * @param progress the progress of the export
+	 */
+	public synchronized void started(ExportProgress progress) {
+		runningExports.add(progress);
+	}
+
+	/**
+	 * Remove the progress of an export that is finished or failed
+	 * 
+	 * @param progress the progress of the export
+	 */
+	public synchronized void finished(ExportProgress progress) {
+		runningExports.remove(progress);
+	}
+
+	@Override
+	public synchronized String[] getRunningExports() {
+		List<String> result = new ArrayList<>();
+		for (ExportProgress progress : runningExports) {
+			result.add(progress.getName() + ": " + progress.getSummary());
+		}
+		return result.toArray(new String[0]);
+	}
+
+	@Override
+	public long getThrottledMillis() {
+		return IoGovernor.getInstance().getThrottledNanos() / 1_000_000;
+	}
+
+	@Override
+	public long getExportWaitMillis() {
+		return IoGovernor.getInstance().getExportWaitNanos() / 1_000_000;
+	}
+
+	@Override
+	public long getOpenFileWaitMillis() {
+		return IoGovernor.getInstance().getOpenFileWaitNanos() / 1_000_000;
+	}
+
+	@Override
+	public synchronized long getExportCount() {
+		return exportCount;
+	}
+
+	@Override
+	public synchronized long getFailedExportCount() {
+		return failedExportCount;
+	}
+
+	@Override
+	public synchronized String[] getPhaseNames() {
+		return phases.keySet().toArray(new String[0]);
+	}
+
+	@Override
+	public long getPhaseCount(String phase) {
+		return getValue(phase, 0);
+	}
+
+	@Override
+	public long getPhaseMillis(String phase) {
+		return getValue(phase, 1) / 1_000_000;
+	}
+
+	@Override
+	public long getPhaseBytes(String phase) {
+		return getValue(phase, 2);
+	}
+
+	@Override
+	public long getPhaseFiles(String phase) {
+		return getValue(phase, 3);
+	}
+
+	@Override
+	public synchronized String getLastSummary() {
+		return lastSummary;
+	}
+
+	@Override
+	public synchronized void reset() {
+		phases.clear();
+		exportCount = 0;
+		failedExportCount = 0;
+		lastSummary = "";
+	}
+
+	private synchronized long getValue(String phase, int index) {
+		long[] values = phases.get(phase);
+		return values == null ? 0 : values[index];
+	}
+
+}
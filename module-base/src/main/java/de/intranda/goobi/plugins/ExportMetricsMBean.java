@@ -0,0 +1,47 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * Management interface of the {@link ExportMetrics}, the values are summed up over all exports since the start of the
+ * application.
+ */
+public interface ExportMetricsMBean {
+
+	long getExportCount();
+
+	long getFailedExportCount();
+
+	String[] getPhaseNames();
+
+	long getPhaseCount(String phase);
+
+	long getPhaseMillis(String phase);
+
+	long getPhaseBytes(String phase);
+
+	long getPhaseFiles(String phase);
+
+	String getLastSummary();
+
+	/**
+	 * @return the progress of the exports that are currently running
+	 */
+	String[] getRunningExports();
+
+	/**
+	 * @return the time all threads waited for the bandwidth limit
+	 */
+	long getThrottledMillis();
+
+	/**
+	 * @return the time exports waited for the limit of concurrent exports
+	 */
+	long getExportWaitMillis();
+
+	/**
+	 * @return the time all threads waited for the limit of open files
+	 */
+	long getOpenFileWaitMillis();
+
+	void reset();
+
+}
@@ -1,14 +1,11 @@
 package de.intranda.goobi.plugins;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.Writer;
 import java.nio.file.DirectoryStream;
-import java.nio.file.FileSystems;
+import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -32,21 +29,26 @@ import java.nio.file.Paths;
  *
  */
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Scanner;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -61,29 +63,18 @@ import org.goobi.production.enums.PluginReturnValue;
 import org.goobi.production.enums.PluginType;
 import org.goobi.production.enums.StepReturnValue;
 import org.goobi.production.plugin.interfaces.IStepPluginVersion2;
-import org.jdom2.Document;
-import org.jdom2.Element;
 import org.jdom2.JDOMException;
-import org.jdom2.Namespace;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 import org.joda.time.DateTime;
 
 import de.sub.goobi.config.ConfigPlugins;
-import de.sub.goobi.export.download.ExportMets;
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.VariableReplacer;
 import de.sub.goobi.helper.exceptions.DAOException;
-import de.sub.goobi.helper.exceptions.ExportFileException;
 import de.sub.goobi.helper.exceptions.SwapException;
-import de.sub.goobi.helper.exceptions.UghHelperException;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
-import ugh.exceptions.DocStructHasNoTypeException;
-import ugh.exceptions.MetadataTypeNotAllowedException;
 import ugh.exceptions.PreferencesException;
 import ugh.exceptions.ReadException;
 import ugh.exceptions.TypeNotAllowedForParentException;
@@ -102,9 +93,18 @@ public class ExportPackageStepPlugin implements IStepPluginVersion2 {
 	private String returnPath;
 	private boolean useSubFolderPerProcess = true;
 	private boolean createZipPerProcess = true;
+	private boolean createZipDirectly = false;
+	private String zipStoredExtensions;
+	private int zipCompressionLevel = -1;
+	private int zipThreads = 1;
+	private ArchiveFormat archiveFormat = ArchiveFormat.ZIP;
 	private boolean copyInternalMetaFile = true;
 	private Map<String, String> imagefolders = new HashMap<>();
+	private Map<String, TransferStrategy> imageFolderTransferStrategies = new HashMap<>();
+	private TransferStrategy transferStrategy = TransferStrategy.COPY;
 	private boolean includeOcr = false;
+	// null to copy the OCR files individually
+	private ArchiveFormat ocrBundleFormat;
 	private boolean includeSource = false;
 	private boolean includeImport = false;
 	private boolean includeExport = false;
@@ -118,28 +118,66 @@ public class ExportPackageStepPlugin implements IStepPluginVersion2 {
 	private String transformMetsFileResultFileName = "";
 
 	private String checksumValidationCommand = "";
+	private boolean useChecksumValidationCommand = false;
+	private int checksumValidationThreads = 4;
+	private boolean hashWhileCopying = false;
+	private boolean writeMissingChecksumFiles = false;
+	private boolean generateMissingChecksums = false;
+	private List<String> additionalChecksumTypes = new ArrayList<>();
+	private int parallelCopies = 1;
+	private boolean incrementalExport = false;
+	private boolean logExportStatistics = false;
+	private boolean asynchronousExport = false;
+	private boolean atomicExport = false;
+	// folder of the content addressed store, empty if it is not used
+	private String contentStoreFolder;
+	private boolean checkFreeSpace = false;
+	// in MB
+	private long minimumFreeSpace = 0;
 	private String checksumFileExtension = "";
 	private String checksumType = "";
 	private boolean includeUUID = false;
 	private boolean includeChecksum = false;
 	private String fileGroupReplacement;
+	private boolean streamingMetsRewrite = false;
 	private String folderNameRule;
 
-	private static final Namespace mets = Namespace.getNamespace("mets", "http://www.loc.gov/METS/");
-	private static final Namespace xlink = Namespace.getNamespace("xlink", "http://www.w3.org/1999/xlink");
+	// pools and rulesets shared with the other processes of a batch export, null for a single export
+	private ExportResources resources;
+	@Getter
+	private ExportStatistics exportStatistics;
+	@Getter
+	private ExportProgress exportProgress;
+	// space on the target reserved by the pre-flight check until the export is finished
+	private DiskSpaceReservation spaceReservation;
+	// folder in the target the package is assembled in, when atomicExport is used
+	private StagingArea staging;
 
 	@Override
 	public void initialize(Step step, String returnPath) {
+		// read parameters from correct block in configuration file
+		initialize(step, returnPath, ConfigPlugins.getProjectAndStepConfig(title, step));
+	}
+
+	/**
+	 * Initialize the plugin with an already selected configuration block, used by the {@link BatchExporter}
+	 * 
+	 * @param step the export step
+	 * @param returnPath the return path
+	 * @param myconfig the configuration block of the project and step
+	 */
+	void initialize(Step step, String returnPath, SubnodeConfiguration myconfig) {
 		this.returnPath = returnPath;
 		this.step = step;
 		process = step.getProzess();
-		// read parameters from correct block in configuration file
-		SubnodeConfiguration myconfig = ConfigPlugins.getProjectAndStepConfig(title, step);
 		target = myconfig.getString("target", "/opt/digiverso/export/");
 
+		transferStrategy = TransferStrategy.getByName(myconfig.getString("transferStrategy"), TransferStrategy.COPY);
 		List<HierarchicalConfiguration> imageFolderConfig = myconfig.configurationsAt("imagefolder");
 		for (HierarchicalConfiguration hc : imageFolderConfig) {
 			imagefolders.put(hc.getString("."), hc.getString("@filegroup"));
+			imageFolderTransferStrategies.put(hc.getString("."),
+					TransferStrategy.getByName(hc.getString("@transferStrategy"), transferStrategy));
 		}
 
 		useSubFolderPerProcess = myconfig.getBoolean("useSubFolderPerProcess", true);
@@ -148,26 +186,68 @@ public class ExportPackageStepPlugin implements IStepPluginVersion2 {
 			// createZipPerProcess requires useSubFolderPerProcess to be true;
 			useSubFolderPerProcess = true;
 		}
+		createZipDirectly = createZipPerProcess && myconfig.getBoolean("createZipDirectly", false);
+		zipStoredExtensions = myconfig.getString("zipStoredExtensions", "");
+		zipCompressionLevel = myconfig.getInt("zipCompressionLevel", -1);
+		zipThreads = myconfig.getInt("zipThreads", 1);
+		archiveFormat = ArchiveFormat.getByName(myconfig.getString("archiveFormat"), ArchiveFormat.ZIP);
 		copyInternalMetaFile = myconfig.getBoolean("copyInternalMetaFile", true);
 
 		folderNameRule = myconfig.getString("folderNameRule", null);
 
 		includeOcr = myconfig.getBoolean("ocr", false);
+		ocrBundleFormat = ArchiveFormat.getByName(myconfig.getString("ocrBundleFormat"), null);
 		includeSource = myconfig.getBoolean("source", false);
 		includeImport = myconfig.getBoolean("import", false);
 		includeExport = myconfig.getBoolean("export", false);
 		includeITM = myconfig.getBoolean("itm", false);
 		includeValidation = myconfig.getBoolean("validation", false);
+		parallelCopies = myconfig.getInt("parallelCopies", 1);
+		// the package manifest is kept in the destination folder, which gets deleted after zipping
+		incrementalExport = !createZipPerProcess && myconfig.getBoolean("incrementalExport", false);
 		includeUUID = myconfig.getBoolean("uuid", false);
 		includeChecksum = myconfig.getBoolean("checksum", false);
 		fileGroupReplacement = myconfig.getString("fileGroupReplacement");
+		streamingMetsRewrite = myconfig.getBoolean("streamingMetsRewrite", false);
+		logExportStatistics = myconfig.getBoolean("logExportStatistics", false);
+		asynchronousExport = myconfig.getBoolean("asynchronousExport", false);
+		if (myconfig.containsKey("asynchronousExportThreads")) {
+			ExportQueue.getInstance().setThreads(myconfig.getInt("asynchronousExportThreads"));
+		}
+		// an incremental export updates the existing folder, without sub folder the files are written into the target
+		atomicExport = useSubFolderPerProcess && !incrementalExport && myconfig.getBoolean("atomicExport", false);
+		checkFreeSpace = myconfig.getBoolean("checkFreeSpace", false);
+		contentStoreFolder = myconfig.getString("contentStore", null);
+		// the I/O limits apply to all exports of the application, they are only changed if they are configured
+		IoGovernor governor = IoGovernor.getInstance();
+		if (myconfig.containsKey("maxBandwidth")) {
+			governor.setBandwidth(myconfig.getLong("maxBandwidth") * 1024 * 1024);
+		}
+		if (myconfig.containsKey("maxConcurrentExports")) {
+			governor.setMaxExports(myconfig.getInt("maxConcurrentExports"));
+		}
+		if (myconfig.containsKey("maxOpenFiles")) {
+			governor.setMaxOpenFiles(myconfig.getInt("maxOpenFiles"));
+		}
+		minimumFreeSpace = myconfig.getLong("minimumFreeSpace", 0);
 
 		checksumValidationCommand = myconfig.getString("checksumValidationCommand", "/usr/bin/sha1sum");
+		useChecksumValidationCommand = myconfig.getBoolean("useChecksumValidationCommand", false);
+		checksumValidationThreads = myconfig.getInt("checksumValidationThreads", 4);
+		hashWhileCopying = myconfig.getBoolean("hashWhileCopying", false);
+		writeMissingChecksumFiles = myconfig.getBoolean("writeMissingChecksumFiles", false);
 		checksumFileExtension = myconfig.getString("checksumFileExtension", ".sha1");
 		if (StringUtils.isNotBlank(checksumFileExtension) && !checksumFileExtension.startsWith(".")) {
 			checksumFileExtension = "." + checksumFileExtension;
 		}
 		checksumType = myconfig.getString("checksumType", "SHA-1");
+		generateMissingChecksums = myconfig.getBoolean("generateMissingChecksums", false);
+		for (String type : myconfig.getString("additionalChecksumTypes", "").split(",")) {
+			if (StringUtils.isNotBlank(type) && !ChecksumVerifier.getDigestAlgorithm(type)
+					.equals(ChecksumVerifier.getDigestAlgorithm(checksumType))) {
+				additionalChecksumTypes.add(type.trim());
+			}
+		}
 
 		transformMetaFile = myconfig.getBoolean("transformMetaFile", false);
 		transformMetaFileXsl = myconfig.getString("transformMetaFileXsl", "/opt/digiverso/goobi/package_meta.xsl");
@@ -223,27 +303,128 @@ public class ExportPackageStepPlugin implements IStepPluginVersion2 {
 
 	@Override
 	public PluginReturnValue run() {
+		if (asynchronousExport) {
+			if (!ExportQueue.getInstance().submit(this)) {
+				log.info("Export of process {} is already queued", process.getId());
+			}
+			return PluginReturnValue.WAIT;
+		}
+		return runExport();
+	}
+
+	/**
+	 * Execute the export on the calling thread
+	 * 
+	 * @return the result of the export
+	 */
+	PluginReturnValue runExport() {
+		// wait until the number of concurrent exports allows another one
+		try {
+			IoGovernor.getInstance().acquireExport();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return PluginReturnValue.ERROR;
+		}
+		ExportStatistics statistics = new ExportStatistics();
+		exportStatistics = statistics;
+		exportProgress = new ExportProgress(process.getTitel());
+		ExportMetrics.getInstance().started(exportProgress);
+		ExportStatistics.Timer total = statistics.start(ExportStatistics.TOTAL);
+		PluginReturnValue result;
+		try {
+			result = export(statistics);
+		} finally {
+			IoGovernor.getInstance().releaseExport();
+			ExportMetrics.getInstance().finished(exportProgress);
+			if (spaceReservation != null) {
+				spaceReservation.close();
+				spaceReservation = null;
+			}
+			if (staging != null) {
+				staging.close();
+				staging = null;
+			}
+		}
+		total.stop();
+		ExportMetrics.getInstance().add(statistics, result != PluginReturnValue.ERROR);
+		log.info("Process {}: {}", process.getId(), statistics.getSummary());
+		if (logExportStatistics) {
+			Helper.addMessageToProcessLog(process.getId(), LogType.INFO, statistics.getSummary());
+		}
+		return result;
+	}
+
+	void setResources(ExportResources resources) {
+		this.resources = resources;
+	}
+
+	private ParallelExporter getParallelExporter(ExportStatistics statistics) {
+		if (resources != null) {
+			return new ParallelExporter(resources.getCopyExecutor(), statistics);
+		}
+		return new ParallelExporter(parallelCopies, statistics);
+	}
+
+	private PluginReturnValue export(ExportStatistics statistics) {
 		boolean successful = false;
-		List<Path> checksumFiles = null;
+		// a missing library is reported before anything is written
+		if (createZipPerProcess && !isAvailable(archiveFormat) || includeOcr && !isAvailable(ocrBundleFormat)) {
+			return PluginReturnValue.ERROR;
+		}
+		// resolve the configured image folders only once
+		Map<String, Path> imageFolderPaths = new LinkedHashMap<>();
+		try {
+			for (String f : imagefolders.keySet()) {
+				imageFolderPaths.put(f, Paths.get(process.getConfiguredImageFolder(f)));
+			}
+		} catch (IOException | SwapException | DAOException e) {
+			log.error("Error during folder export in package generation", e);
+			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+					"Error during folder export in package generation: " + e.getMessage());
+			return PluginReturnValue.ERROR;
+		}
+		// read all checksum files once, they are used for the validation and for the METS file
+		ChecksumIndex checksumIndex = null;
+		Map<String, Map<String, String>> checksumsPerFileGroup = null;
+		List<Path> generatedChecksumFiles = new ArrayList<>();
 		if (includeChecksum) {
 			Path folder;
 			try {
 				folder = Paths.get(process.getProcessDataDirectory(), "validation", "checksum", "images");
-				if (StorageProvider.getInstance().isDirectory(folder)) {
-					checksumFiles = StorageProvider.getInstance().listFiles(folder.toString(), checksumFilter);
+				if (StorageProvider.getInstance().isDirectory(folder) || generateMissingChecksums) {
+					Set<String> folderNames = new HashSet<>();
+					for (Path imageFolder : imageFolderPaths.values()) {
+						folderNames.add(imageFolder.getFileName().toString());
+					}
+					List<Path> checksumFiles = new ArrayList<>();
+					if (StorageProvider.getInstance().isDirectory(folder)) {
+						checksumFiles.addAll(StorageProvider.getInstance().listFiles(folder.toString(), checksumFilter));
+					}
+					if (generateMissingChecksums) {
+						generatedChecksumFiles = generateChecksumFiles(folder, checksumFiles, imageFolderPaths.values(),
+								statistics);
+						checksumFiles.addAll(generatedChecksumFiles);
+					}
+					checksumIndex = ChecksumIndex.read(checksumFiles, checksumFileExtension, folderNames);
+					checksumsPerFileGroup = getChecksumsPerFileGroup(checksumIndex, imageFolderPaths);
 				} else {
 					includeChecksum = false;
 				}
 			} catch (IOException | SwapException e) {
 				log.error(e);
 				includeChecksum = false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return PluginReturnValue.ERROR;
 			}
 		}
+		// the metadata file is parsed only once and shared by the variable replacer, the METS export and the XSLT
+		MetadataSession session = new MetadataSession(process, resources == null ? process.getRegelsatz().getPreferences()
+				: resources.getPreferences(process.getRegelsatz()));
 		VariableReplacer variableReplacer = null;
 
 		try {
-			variableReplacer = new VariableReplacer(process.readMetadataFile().getDigitalDocument(),
-					process.getRegelsatz().getPreferences(), process, step);
+			variableReplacer = new VariableReplacer(session.getDigitalDocument(), session.getPreferences(), process, step);
 		} catch (PreferencesException | ReadException | IOException | SwapException e1) {
 			log.info(e1);
 			variableReplacer = new VariableReplacer(null, null, process, step);
@@ -265,363 +446,601 @@ public class ExportPackageStepPlugin implements IStepPluginVersion2 {
 				destination = Paths.get(target, folderName);
 			}
 		}
-		if (!Files.exists(destination)) {
+		ExportJournal journal = null;
+		if (asynchronousExport) {
+			journal = openJournal(destination);
+			if (journal != null && journal.isResumed()) {
+				// continue in the folder of the interrupted export, its name may contain another timestamp
+				destination = journal.getDestination();
+				if (folderName != null) {
+					folderName = Paths.get(target).toAbsolutePath().normalize().relativize(destination).toString();
+				}
+			}
+			if (journal != null && journal.isCompleted(ExportStatistics.ARCHIVE)) {
+				// the interrupted export was complete, only the step was not closed
+				log.info("Export of process {} into {} was already completed", process.getId(), destination);
+				deleteJournal(journal);
+				return PluginReturnValue.FINISH;
+			}
+		}
+		// the package is assembled in a staging folder and moved into the target once it is complete
+		Path finalDestination = destination;
+		if (atomicExport) {
 			try {
-				Files.createDirectories(destination);
+				staging = StagingArea.open(Paths.get(target), String.valueOf(process.getId()),
+						journal != null && journal.isResumed());
+				staging.setResumable(journal != null);
+				destination = staging.resolve(destination);
 			} catch (IOException e) {
-				log.error("Error during generation of destination path", e);
+				log.error("Error creating the staging folder", e);
 				Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
-						"Error during generation of destination path: " + e.getMessage());
+						"Error creating the staging folder: " + e.getMessage());
+				closeJournal(journal);
+				return PluginReturnValue.ERROR;
 			}
 		}
-
-		// do the regular export of the METS file
-		ExportMets em = new ExportMets();
-		try {
-			successful = em.startExport(process, destination.toString() + FileSystems.getDefault().getSeparator());
-		} catch (PreferencesException | WriteException | DocStructHasNoTypeException | MetadataTypeNotAllowedException
-				| ReadException | TypeNotAllowedForParentException | IOException | InterruptedException
-				| ExportFileException | UghHelperException | SwapException | DAOException e) {
-			log.error("Error during METS export in package generation", e);
-			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
-					"Error during METS export in package generation: " + e.getMessage());
-			Helper.setFehlerMeldung("Error during METS export in package generation", e);
-		}
-
-		// export images folders as well
+		// collect the files of all configured folders
+		ExportPlan plan = new ExportPlan();
+		Map<Path, Path> exportedImageFolders = new LinkedHashMap<>();
+		List<Path> ocrBundles = new ArrayList<>();
+		ContentStore contentStore = null;
 		try {
-			for (String f : imagefolders.keySet()) {
-				Path folder = Paths.get(process.getConfiguredImageFolder(f));
+			for (Entry<String, Path> imageFolder : imageFolderPaths.entrySet()) {
+				Path folder = imageFolder.getValue();
 				if (StorageProvider.getInstance().isFileExists(folder)) {
 					Path currentDestination = Paths.get(destination.toString(), folder.getFileName().toString());
-					StorageProvider.getInstance().copyDirectory(folder, currentDestination);
-					if (includeChecksum) {
-						if (!validateExportedFolder(checksumFiles, folder, currentDestination)) {
-							// validation not successful, try it again
-							StorageProvider.getInstance().copyDirectory(folder, currentDestination);
-							if (!validateExportedFolder(checksumFiles, folder, currentDestination)) {
-								// validation still not successful, maybe checksums are outdated?, abort
-								Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
-										"checksum missmatch on export");
-								return PluginReturnValue.ERROR;
-							}
-
+					plan.addFolder(folder.getFileName().toString(), folder, currentDestination,
+							isHashWhileCopying(checksumIndex, folder) ? checksumType : null,
+							imageFolderTransferStrategies.get(imageFolder.getKey()));
+					exportedImageFolders.put(folder, currentDestination);
+				}
+			}
+			addAdditionalFolders(plan, destination, ocrBundles);
+			// the generated checksum files are part of the package, next to their image folders
+			for (Path checksumFile : generatedChecksumFiles) {
+				plan.addFile("checksums", checksumFile, destination.resolve(checksumFile.getFileName()));
+			}
+			// images with a known checksum are linked from the content store, the zip file is written from the sources
+			if (StringUtils.isNotBlank(contentStoreFolder) && !createZipDirectly) {
+				contentStore = new ContentStore(Paths.get(contentStoreFolder.trim()), checksumType);
+				for (Path folder : exportedImageFolders.keySet()) {
+					Map<String, String> checksums = getChecksums(checksumIndex, folder);
+					if (checksums != null) {
+						for (ExportPlan.Entry entry : plan.getEntries(folder.getFileName().toString())) {
+							entry.setDigest(checksums.get(entry.getRelativeName()));
 						}
 					}
 				}
 			}
-		} catch (IOException | InterruptedException | SwapException | DAOException e) {
-			successful = false;
+		} catch (IOException | SwapException e) {
 			log.error("Error during folder export in package generation", e);
 			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
 					"Error during folder export in package generation: " + e.getMessage());
+			closeJournal(journal);
+			return PluginReturnValue.ERROR;
 		}
 
+		// pre-flight: size of all files and free space on the target, before anything is written
+		ExportEstimate estimate;
+		ExportStatistics.Timer preflight = statistics.start(ExportStatistics.PREFLIGHT);
 		try {
-
-			// copy the internal meta.xml file
-			if (copyInternalMetaFile) {
-				StorageProvider.getInstance().copyFile(Paths.get(process.getMetadataFilePath()),
-						Paths.get(destination.toString(), process.getTitel() + "_meta.xml"));
-			}
-
-			// export ocr results
-			if (includeOcr) {
-				Path ocrFolder = Paths.get(process.getOcrDirectory());
-				if (ocrFolder != null && Files.exists(ocrFolder)) {
-					List<Path> ocrData = StorageProvider.getInstance().listFiles(ocrFolder.toString());
-					for (Path path : ocrData) {
-						if (Files.isDirectory(path)) {
-							StorageProvider.getInstance().copyDirectory(path,
-									Paths.get(destination.toString(), path.getFileName().toString()));
-						} else {
-							StorageProvider.getInstance().copyFile(path,
-									Paths.get(destination.toString(), path.getFileName().toString()));
-						}
-					}
-				}
+			FileStore targetStore = checkFreeSpace ? DiskSpaceReservation.getFileStore(destination) : null;
+			estimate = ExportEstimate.calculate(plan, parallelCopies, targetStore);
+			preflight.stop(estimate.getBytes(), estimate.getFiles());
+			log.info("Export of process {}: {} files, {}", process.getId(), estimate.getFiles(),
+					ExportStatistics.formatBytes(estimate.getBytes()));
+			if (targetStore != null && !reserveSpace(targetStore, destination, estimate)) {
+				closeJournal(journal);
+				return PluginReturnValue.ERROR;
 			}
+		} catch (IOException e) {
+			log.error("Error during the pre-flight check of the export", e);
+			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+					"Error during the pre-flight check of the export: " + e.getMessage());
+			closeJournal(journal);
+			return PluginReturnValue.ERROR;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			closeJournal(journal);
+			return PluginReturnValue.ERROR;
+		}
 
-			// export source folder
-			if (includeSource) {
-				Path sourceFolder = Paths.get(process.getSourceDirectory());
-				if (sourceFolder != null && Files.exists(sourceFolder)) {
-					StorageProvider.getInstance().copyDirectory(sourceFolder,
-							Paths.get(destination.toString(), process.getTitel() + "_source"));
-				}
+		if (!Files.exists(destination)) {
+			try {
+				Files.createDirectories(destination);
+			} catch (IOException e) {
+				log.error("Error during generation of destination path", e);
+				Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+						"Error during generation of destination path: " + e.getMessage());
+				closeJournal(journal);
+				return PluginReturnValue.ERROR;
 			}
+		}
 
-			// export import folder
-			if (includeImport) {
-				Path importFolder = Paths.get(process.getImportDirectory());
-				if (importFolder != null && Files.exists(importFolder)) {
-					StorageProvider.getInstance().copyDirectory(importFolder,
-							Paths.get(destination.toString(), process.getTitel() + "_import"));
-				}
-			}
+		// do the regular export of the METS file
+		SessionExportMets em = new SessionExportMets();
+		ExportStatistics.Timer metsExport = statistics.start(ExportStatistics.METS_EXPORT);
+		try {
+			successful = em.startExport(session, destination);
+			Path metsFile = Paths.get(destination.toString(), process.getTitel() + "_mets.xml");
+			metsExport.stop(Files.exists(metsFile) ? Files.size(metsFile) : 0, 1);
+		} catch (PreferencesException | WriteException | ReadException | TypeNotAllowedForParentException | IOException
+				| InterruptedException | SwapException | DAOException e) {
+			log.error("Error during METS export in package generation", e);
+			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+					"Error during METS export in package generation: " + e.getMessage());
+			Helper.setFehlerMeldung("Error during METS export in package generation", e);
+		}
 
-			// export export folder
-			if (includeExport) {
-				Path exportFolder = Paths.get(process.getExportDirectory());
-				if (exportFolder != null && Files.exists(exportFolder)) {
-					StorageProvider.getInstance().copyDirectory(exportFolder,
-							Paths.get(destination.toString(), process.getTitel() + "_export"));
-				}
-			}
+		// the METS file is rewritten and both files are transformed in the background while the folders are copied
+		DocumentTasks documentTasks = resources == null ? new DocumentTasks(Executors.newFixedThreadPool(2), false)
+				: new DocumentTasks(resources.getDocumentExecutor(), true);
+		startDocumentTasks(documentTasks, destination, folderName, checksumsPerFileGroup, variableReplacer, session,
+				statistics);
+		for (Path ocrFolder : ocrBundles) {
+			documentTasks.submit(getOcrBundleTask(ocrFolder, destination, statistics));
+		}
 
-			// export ITM folder
-			if (includeITM) {
-				Path itmFolder = Paths.get(process.getProcessDataDirectory() + "taskmanager");
-				if (itmFolder != null && Files.exists(itmFolder)) {
-					StorageProvider.getInstance().copyDirectory(itmFolder,
-							Paths.get(destination.toString(), itmFolder.getFileName().toString()));
+		try {
+			// with createZipDirectly the files are read from their original location while the zip file is written
+			if (!createZipDirectly) {
+				// files exported by a previous or an interrupted export, that don't need to be copied again
+				PackageManifest exportedFiles = new PackageManifest(checksumType);
+				if (incrementalExport) {
+					// only copy the files that have changed since the last export into this destination
+					Path manifestFile = destination.resolve(PackageManifest.FILE_NAME);
+					PackageManifest previousManifest = PackageManifest.read(manifestFile, checksumType);
+					Files.deleteIfExists(manifestFile);
+					deleteRemovedFiles(plan, destination, previousManifest);
+					exportedFiles.addAll(previousManifest);
+				}
+				if (journal != null) {
+					exportedFiles.addAll(journal.getExportedFiles());
+				}
+				Set<ExportPlan.Entry> unchangedEntries = getUnchangedEntries(plan, destination, exportedFiles);
+				ExportPlan copyPlan = plan.filter(entry -> !unchangedEntries.contains(entry));
+				if (!unchangedEntries.isEmpty()) {
+					log.info("Export into {}: {} of {} entries unchanged", destination, unchangedEntries.size(),
+							plan.getEntries().size());
 				}
-			}
 
-			// export validation folder
-			if (includeValidation) {
-				Path validationFolder = Paths.get(process.getProcessDataDirectory() + "validation");
-				if (validationFolder != null && Files.exists(validationFolder)) {
-					StorageProvider.getInstance().copyDirectory(validationFolder,
-							Paths.get(destination.toString(), validationFolder.getFileName().toString()));
+				// copy everything, up to parallelCopies files at the same time
+				ExportStatistics.Timer copy = statistics.start(ExportStatistics.COPY);
+				ParallelExporter exporter = getParallelExporter(statistics);
+				exporter.setListener(getCopyListener(journal, destination, estimate));
+				exportProgress.start(estimate.getFiles(copyPlan), estimate.getBytes(copyPlan));
+				exporter.setProgress(exportProgress);
+				exporter.setContentStore(contentStore);
+				ParallelExporter.Result result = exporter.execute(copyPlan);
+				copy.stop();
+				if (contentStore != null) {
+					log.info("Content store {}: {} files added, {} files reused", contentStore.getRoot(),
+							contentStore.getStoredFiles(), contentStore.getReusedFiles());
 				}
-			}
-			Path metsFile = Paths.get(destination.toString(), process.getTitel() + "_mets.xml");
-			if (includeUUID) {
-				// open exported file
-				Document document = readDocument(metsFile);
-
-				Element root = document.getRootElement();
-				Element fileSec = root.getChild("fileSec", mets);
-				List<Element> fileGroups = fileSec.getChildren();
-
-				// - UUIDs as @ID for each mets:fileGrp and mets:file within
-				Map<String, String> idMap = new HashMap<>();
-				for (Element fileGroup : fileGroups) {
-					// create new UUID for fileGrp @ID
-					UUID uuid = UUID.randomUUID();
-					fileGroup.setAttribute("ID", uuid.toString());
-
-					// create new UUID for each file and store it in ID attribute
-					for (Element file : fileGroup.getChildren()) {
-						String oldId = file.getAttributeValue("ID");
-						String newId = UUID.randomUUID().toString();
-						file.setAttribute("ID", newId);
-						// save mapping from old to new id
-						idMap.put(oldId, newId);
+				for (ExportPlan.Entry entry : unchangedEntries) {
+					String digest = exportedFiles.get(getPackageName(destination, entry)).getDigest();
+					if (entry.getChecksumType() != null && digest != null) {
+						result.addChecksum(entry.getLabel(), entry.getRelativeName(), digest);
 					}
 				}
-				// - update fptr, link to uuids
-				List<Element> structMaps = root.getChildren("structMap", mets);
-				for (Element structMap : structMaps) {
-					if ("PHYSICAL".equals(structMap.getAttributeValue("TYPE"))) {
-						Element physSequence = structMap.getChild("div", mets);
-						List<Element> pages = physSequence.getChildren();
-						for (Element page : pages) {
-							List<Element> filePointer = page.getChildren("fptr", mets);
-							for (Element fptr : filePointer) {
-								String oldId = fptr.getAttributeValue("FILEID");
-
-								String newId = idMap.get(oldId);
-								if (StringUtils.isNotBlank(newId)) {
-									fptr.setAttribute("FILEID", newId);
-								}
-							}
-						}
-					}
+				for (Entry<String, List<String>> error : result.getErrors().entrySet()) {
+					successful = false;
+					Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+							"Error during export of " + error.getKey() + ": " + summarize(error.getValue()));
 				}
-				// save exported file
-				writeDocument(document, metsFile);
-			}
-			if (includeChecksum) {
-				// check if checksum file exists
-				Path folder = Paths.get(process.getProcessDataDirectory(), "validation", "checksum", "images");
-				if (StorageProvider.getInstance().isDirectory(folder)) {
-
-					// open exported file
-					Document document = readDocument(metsFile);
-					Element root = document.getRootElement();
-					Element fileSec = root.getChild("fileSec", mets);
-					List<Element> fileGroups = fileSec.getChildren();
-					for (Element fileGroup : fileGroups) {
-						Path checksumFile = null;
-						// find checksum file for current filegroup
-						for (String imageFolderName : imagefolders.keySet()) {
-							String fileGroupName = imagefolders.get(imageFolderName);
-							if (fileGroupName != null && fileGroupName.equals(fileGroup.getAttributeValue("USE"))) {
-								Path imageFolder = Paths.get(process.getConfiguredImageFolder(imageFolderName));
-								for (Path checksum : checksumFiles) {
-									if (checksum.getFileName().toString().replace(checksumFileExtension, "")
-											.equals(imageFolder.getFileName().toString())) {
-										checksumFile = checksum;
-									}
-								}
-							}
-						}
-						if (checksumFile != null) {
-							// read checksums
-							Map<String, String> filesAndChecksums = new HashMap<>();
-							List<String> lines = Files.readAllLines(checksumFile);
-							for (String line : lines) {
-								if (!line.startsWith("#") && StringUtils.isNotBlank(line)) {
-									String[] parts = line.split("  ");
-									filesAndChecksums.put(parts[1].substring(0, parts[1].lastIndexOf(".")), parts[0]);
-								}
-							}
-							// add checksum + type for each file element
-							for (Element file : fileGroup.getChildren()) {
-								Element location = file.getChild("FLocat", mets);
-								String ref = location.getAttributeValue("href", xlink);
-								String filename = ref.contains("/") ? ref.substring(ref.lastIndexOf("/") + 1) : ref;
-								String basename = filename.substring(0, filename.lastIndexOf("."));
-								String checksum = filesAndChecksums.get(basename);
-								if (StringUtils.isNotBlank(checksum)) {
-									file.setAttribute("CHECKSUMTYPE", checksumType);
-									file.setAttribute("CHECKSUM", checksum);
-								}
-							}
-						}
-					}
 
-					// save exported file
-					writeDocument(document, metsFile);
+				if (journal != null && !result.hasErrors()) {
+					journal.complete(ExportStatistics.COPY);
 				}
-			}
 
-			if (StringUtils.isNotBlank(fileGroupReplacement) && StringUtils.isNotBlank(folderName)) {
-				String searchValue = variableReplacer.replace(fileGroupReplacement);
-				// open exported file
-				Document document = readDocument(metsFile);
-
-				Element root = document.getRootElement();
-				Element fileSec = root.getChild("fileSec", mets);
-				List<Element> fileGroups = fileSec.getChildren();
-				for (Element fileGroup : fileGroups) {
-					for (Element file : fileGroup.getChildren()) {
-						Element location = file.getChild("FLocat", mets);
-						String ref = location.getAttributeValue("href", xlink);
-						ref = ref.replace(searchValue, folderName);
-						location.setAttribute("href", ref, xlink);
+				// validate the exported images, unless the interrupted export validated them and nothing was copied since
+				boolean validated = journal != null && journal.isCompleted(ExportStatistics.VALIDATION)
+						&& copyPlan.getEntries().stream().allMatch(ExportPlan.Entry::isDirectory);
+				ExportStatistics.Timer validation = statistics.start(ExportStatistics.VALIDATION);
+				for (Entry<Path, Path> imageFolder : exportedImageFolders.entrySet()) {
+					Path folder = imageFolder.getKey();
+					if (!validated && !validateImageFolder(folder, imageFolder.getValue(), checksumIndex,
+							result.getChecksums(folder.getFileName().toString()))) {
+						Helper.addMessageToProcessLog(process.getId(), LogType.ERROR, "checksum missmatch on export");
+						documentTasks.stop();
+						closeJournal(journal);
+						return PluginReturnValue.ERROR;
 					}
 				}
-
-				// save exported file
-				writeDocument(document, metsFile);
-			}
-
-			// do XSLT Transformation of METS file
-			if (transformMetsFile) {
-				Source xslt = new StreamSource(new File(transformMetsFileXsl));
-				Source mets = new StreamSource(metsFile.toFile());
-				TransformerFactory factory = TransformerFactory.newInstance();
-				Transformer transformer = factory.newTransformer(xslt);
-				transformer.setParameter("processTitle", process.getTitel());
-				transformer.transform(mets, new StreamResult(
-						new File(destination.toFile(), variableReplacer.replace(transformMetsFileResultFileName))));
-			}
-
-			// do XSLT Transformation of internal METS file
-			if (transformMetaFile) {
-				Source xslt = new StreamSource(new File(transformMetaFileXsl));
-				Source mets = new StreamSource(
-						Paths.get(destination.toString(), process.getTitel() + "_meta.xml").toFile());
-				TransformerFactory factory = TransformerFactory.newInstance();
-				Transformer transformer = factory.newTransformer(xslt);
-				transformer.transform(mets, new StreamResult(
-						new File(destination.toFile(), variableReplacer.replace(transformMetaFileResultFileName))));
+				validation.stop();
+				if (journal != null && !result.hasErrors()) {
+					journal.complete(ExportStatistics.VALIDATION);
+				}
+				if (incrementalExport && !result.hasErrors()) {
+					writePackageManifest(plan, destination, result);
+				}
 			}
+		} catch (IOException | InterruptedException e) {
+			successful = false;
+			log.error("Error during folder export in package generation", e);
+			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+					"Error during folder export in package generation: " + e.getMessage());
+		}
 
-			if (createZipPerProcess) {
+		try {
+			// the generated files must be complete before they are zipped
+			documentTasks.await();
+
+			ExportStatistics.Timer archive = statistics.start(ExportStatistics.ARCHIVE);
+			if (createZipDirectly) {
+				if (!writeZipDirectly(destination, plan, exportedImageFolders.keySet(), checksumIndex, estimate)) {
+					closeJournal(journal);
+					return PluginReturnValue.ERROR;
+				}
+			} else if (createZipPerProcess) {
 				Path sourceFolder = destination;
-				Path zipDestination = destination.getParent();
-				zipDestination = zipDestination.resolve(sourceFolder.getFileName() + ".zip");
-
-				try {
-					OutputStream os = Files.newOutputStream(zipDestination);
-					ZipOutputStream zos = new ZipOutputStream(os);
-					
-					//DELETE the folder if creating the archive was successful
-					if (zipFolder(zos, sourceFolder, sourceFolder.getParent())) {
-						StorageProvider.getInstance().deleteDir(sourceFolder);
-					}
+				Path zipDestination = getArchiveFile(destination);
 
-					zos.flush();
-					os.flush();
-					zos.close();
-					os.close();
-					
+				boolean zipCreated = false;
+				try (PackageArchiveWriter zip = getArchiveWriter(zipDestination)) {
+					zip.addFolder(sourceFolder, sourceFolder.getFileName().toString());
+					zipCreated = true;
 				} catch (IOException ex) {
+					// a partial archive must not be published or completed in the journal
+					successful = false;
 					String message = "Error creating Zip-File";
 					log.error(message+"!", ex);
 					Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
 							message +": " + ex.getMessage());
+					try {
+						Files.deleteIfExists(zipDestination);
+					} catch (IOException e1) {
+						log.error(e1);
+					}
+				}
+				//DELETE the folder if creating the archive was successful
+				if (zipCreated) {
+					StorageProvider.getInstance().deleteDir(sourceFolder);
 				}
 			}
+			if (createZipPerProcess) {
+				Path zipFile = getArchiveFile(destination);
+				archive.stop(Files.exists(zipFile) ? Files.size(zipFile) : 0, 0);
+			}
+			if (staging != null && successful) {
+				staging.commit(createZipPerProcess ? getArchiveFile(finalDestination) : finalDestination);
+			}
+			if (journal != null && successful) {
+				journal.complete(ExportStatistics.ARCHIVE);
+			}
 
-		} catch (SwapException | DAOException | IOException | TransformerException e) {
+		} catch (IOException | TransformerException | JDOMException | XMLStreamException e) {
 			successful = false;
 			log.error("Error during additional folder export in package generation", e);
 			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
 					"Error during additional folder export in package generation: " + e.getMessage());
+		} finally {
+			documentTasks.stop();
 		}
 
 		log.info("GeneratePackage step plugin executed");
 		if (!successful) {
+			// the journal is kept, so that the export can be resumed
+			closeJournal(journal);
 			return PluginReturnValue.ERROR;
 		}
+		deleteJournal(journal);
 		return PluginReturnValue.FINISH;
 	}
 
 	/**
-	 * Creates a zip file of the files in the source folder
-	 * @param zos a zipoutputstream to write to
-	 * @param source the source folder of the files that shall be compressed
-	 * @param parentDirectory the parent directory of the source folder needed to create relative paths
-	 * @return returns true if the operation was successful
+	 * Check that the libraries of a configured archive format are installed
+	 * 
+	 * @param format the format or null, if none is configured
+	 * @return false if the format can't be written, the error is added to the process log
 	 */
-	static boolean zipFolder(ZipOutputStream zos, Path source, Path parentDirectory) {
-		if (source == null || !Files.exists(source)) {
-			return false;
+	private boolean isAvailable(ArchiveFormat format) {
+		if (format == null || format.isAvailable()) {
+			return true;
 		}
-		if (Files.isDirectory(source)) {
-			try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
-				// Add entry for empty folders!
-				Iterator<Path> itr = stream.iterator();
-				if (!itr.hasNext()) {
-					String folderWithSeparator = parentDirectory.relativize(source).toString() + File.separator;
-					zos.putNextEntry(new ZipEntry(folderWithSeparator));
-					zos.closeEntry();
-				}
-				while (itr.hasNext()) {
-					zipFolder(zos, itr.next(), parentDirectory);
-				}
-				return true;
+		log.error(format.getUnavailableMessage());
+		Helper.addMessageToProcessLog(process.getId(), LogType.ERROR, format.getUnavailableMessage());
+		return false;
+	}
+
+	/**
+	 * Open the checkpoint journal of the export in the process data directory. The journal is identified by the process
+	 * and the configured destination before variables like {timestamp} are replaced.
+	 * 
+	 * @param destination the destination folder of a new export
+	 * @return the journal or null, if it could not be opened
+	 */
+	private ExportJournal openJournal(Path destination) {
+		String key = process.getId() + "\t" + target;
+		if (useSubFolderPerProcess) {
+			key += "\t" + (StringUtils.isBlank(folderNameRule) ? process.getTitel() : folderNameRule);
+		}
+		try {
+			Path file = Paths.get(process.getProcessDataDirectory(), ExportJournal.FILE_NAME);
+			ExportJournal journal = ExportJournal.open(file, key, destination, checksumType);
+			if (journal.isResumed()) {
+				Helper.addMessageToProcessLog(process.getId(), LogType.INFO, "Resuming interrupted export into "
+						+ journal.getDestination() + ", " + journal.getExportedFiles().getNames().size()
+						+ " files were already exported.");
+			}
+			return journal;
+		} catch (IOException | SwapException e) {
+			log.error("Error opening the export journal of process {}", process.getId(), e);
+			return null;
+		}
+	}
+
+	private void closeJournal(ExportJournal journal) {
+		if (journal != null) {
+			try {
+				journal.close();
 			} catch (IOException e) {
-				e.printStackTrace();
-				return false;
+				log.error("Error closing the export journal of process {}", process.getId(), e);
 			}
-		} else {
+		}
+	}
+
+	private void deleteJournal(ExportJournal journal) {
+		if (journal != null) {
 			try {
-				InputStream is = Files.newInputStream(source);
-				byte[] buffer = new byte[1024];
-				ZipEntry entry = new ZipEntry(parentDirectory.relativize(source).toString());
+				journal.delete();
+			} catch (IOException e) {
+				log.error("Error deleting the export journal of process {}", process.getId(), e);
+			}
+		}
+	}
 
-				zos.putNextEntry(entry);
+	/**
+	 * @param journal the journal of the export, can be null
+	 * @param destination the destination folder
+	 * @param estimate the sizes of the exported files
+	 * @return a listener recording the exported files in the journal and releasing their reserved space, null if there
+	 *         is neither a journal nor a reservation
+	 */
+	private BiConsumer<ExportPlan.Entry, String> getCopyListener(ExportJournal journal, Path destination,
+			ExportEstimate estimate) {
+		BiConsumer<ExportPlan.Entry, String> listener = journal == null ? null : getJournalListener(journal, destination);
+		DiskSpaceReservation reservation = spaceReservation;
+		if (reservation == null) {
+			return listener;
+		}
+		// the copied file already reduces the free space, so it must no longer be reserved
+		BiConsumer<ExportPlan.Entry, String> release = (entry, digest) -> reservation
+				.written(estimate.getBytesToWrite(entry));
+		return listener == null ? release : listener.andThen(release);
+	}
 
-				int length;
-				while ((length = is.read(buffer)) > 0) {
-					zos.write(buffer, 0, length);
-				}
-				zos.closeEntry();
-				is.close();
+	/**
+	 * @return a listener recording each exported file in the journal
+	 */
+	private BiConsumer<ExportPlan.Entry, String> getJournalListener(ExportJournal journal, Path destination) {
+		return (entry, digest) -> {
+			try {
+				journal.fileExported(getPackageName(destination, entry), entry.getSource(), digest);
 			} catch (IOException e) {
-				e.printStackTrace();
-				return false;
+				// the file is exported, it is only copied again if the export gets resumed
+				log.warn("Error writing the export journal of process {}", process.getId(), e);
 			}
-			return true;
+		};
+	}
+
+	/**
+	 * Start the rewrite of the exported METS file and the XSLT transformations. They don't depend on the exported
+	 * folders, so they can run while the files are copied.
+	 * 
+	 * @param tasks the background tasks of the export
+	 * @param destination the destination folder
+	 * @param folderName the generated folder name or null
+	 * @param checksumsPerFileGroup the checksums to add to the METS file or null, if checksums are not used
+	 * @param variableReplacer the variable replacer of the process
+	 * @param session the metadata of the process
+	 * @param statistics records the duration of the tasks
+	 */
+	private void startDocumentTasks(DocumentTasks tasks, Path destination, String folderName,
+			Map<String, Map<String, String>> checksumsPerFileGroup, VariableReplacer variableReplacer, MetadataSession session,
+			ExportStatistics statistics) {
+		// the variable replacer is only used by the calling thread
+		String hrefSearchValue = StringUtils.isNotBlank(fileGroupReplacement) && StringUtils.isNotBlank(folderName)
+				? variableReplacer.replace(fileGroupReplacement)
+				: null;
+		Path metsResult = destination.resolve(variableReplacer.replace(transformMetsFileResultFileName));
+		Path metaResult = destination.resolve(variableReplacer.replace(transformMetaFileResultFileName));
+		String processTitle = process.getTitel();
+
+		MetsDocumentTask metsTask = new MetsDocumentTask(Paths.get(destination.toString(), processTitle + "_mets.xml"),
+				statistics);
+		metsTask.setStreaming(streamingMetsRewrite);
+		metsTask.setReplaceIds(includeUUID);
+		if (includeChecksum) {
+			metsTask.setChecksumsPerFileGroup(checksumsPerFileGroup);
+			metsTask.setChecksumType(checksumType);
+		}
+		if (hrefSearchValue != null) {
+			metsTask.setHrefSearchValue(hrefSearchValue);
+			metsTask.setHrefReplacement(folderName);
+		}
+		// do XSLT Transformation of METS file
+		if (transformMetsFile) {
+			metsTask.setTransformationXsl(Paths.get(transformMetsFileXsl));
+			metsTask.setTransformationResult(metsResult);
+			metsTask.setProcessTitle(processTitle);
+		}
+		tasks.submit(metsTask);
+		// do XSLT Transformation of internal METS file
+		if (transformMetaFile) {
+			tasks.submit(() -> {
+				ExportStatistics.Timer transformation = statistics.start(ExportStatistics.META_TRANSFORMATION);
+				Source meta = new StreamSource(new ByteArrayInputStream(session.getContent()));
+				Transformer transformer = XsltTemplatesCache.getInstance().getTemplates(Paths.get(transformMetaFileXsl))
+						.newTransformer();
+				transformer.transform(meta, new StreamResult(metaResult.toFile()));
+				transformation.stop(Files.size(metaResult), 1);
+				return null;
+			});
 		}
 	}
 
+	/**
+	 * Write the zip file directly from the original files. Only the files generated in the destination folder (METS
+	 * file, XSLT results) are read from there, the folder gets deleted afterwards. Checksums of the image folders are
+	 * validated while the images are added.
+	 * 
+	 * @param destination the destination folder containing the generated files
+	 * @param plan the files to add
+	 * @param imageFolders the exported image folders
+	 * @param checksumIndex the checksums of the image folders or null, if checksums are not used
+	 * @param estimate the sizes of the files, used for the progress
+	 * @return false if the checksums don't match or the archive could not be written
+	 */
+	private boolean writeZipDirectly(Path destination, ExportPlan plan, Collection<Path> imageFolders,
+			ChecksumIndex checksumIndex, ExportEstimate estimate) {
+		Path zipDestination = getArchiveFile(destination);
+		String root = destination.getFileName().toString();
+		ParallelExporter.Result result = new ParallelExporter.Result();
+		exportProgress.start(estimate.getFiles(plan), estimate.getBytes(plan));
+		// the space of a replaced archive is not reserved, 0 if there is none
+		long existingArchive = zipDestination.toFile().length();
+		long releasedSpace = 0;
+		try (PackageArchiveWriter zip = getArchiveWriter(zipDestination)) {
+			zip.addFolder(destination, root);
+			for (ExportPlan.Entry entry : plan.getEntries()) {
+				String name = root + "/" + HashingCopier.getRelativeName(destination, entry.getTarget());
+				if (entry.isDirectory()) {
+					zip.addDirectory(name);
+				} else {
+					zip.addFile(name, entry.getSource(), entry.getChecksumType(),
+							checksum -> result.addChecksum(entry.getLabel(), entry.getRelativeName(), checksum));
+					exportProgress.add(estimate.getSize(entry));
+					if (spaceReservation != null) {
+						// compressed entries need less space than estimated, so only the growth of the archive is released
+						long growth = Math.max(0, Files.size(zipDestination) - existingArchive);
+						spaceReservation.written(growth - releasedSpace);
+						releasedSpace = Math.max(releasedSpace, growth);
+					}
+				}
+			}
+			// wait until all checksums are known
+			zip.flush();
+			for (Path folder : imageFolders) {
+				Map<String, String> expected = getChecksums(checksumIndex, folder);
+				Map<String, String> checksums = result.getChecksums(folder.getFileName().toString());
+				if (expected != null) {
+					List<String> mismatches = HashingCopier.getMismatches(expected, checksums);
+					if (!mismatches.isEmpty()) {
+						Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+								"checksum missmatch for files in " + folder.getFileName() + ": " + summarize(mismatches));
+						throw new IOException("checksum missmatch on export");
+					}
+				} else if (writeMissingChecksumFiles) {
+					ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+					HashingCopier.writeManifest(checksums, manifest);
+					zip.addFile(root + "/" + folder.getFileName() + checksumFileExtension, manifest.toByteArray());
+				}
+			}
+		} catch (IOException e) {
+			String message = "Error creating Zip-File";
+			log.error(message + "!", e);
+			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR, message + ": " + e.getMessage());
+			try {
+				Files.deleteIfExists(zipDestination);
+			} catch (IOException e1) {
+				log.error(e1);
+			}
+			return false;
+		}
+		StorageProvider.getInstance().deleteDir(destination);
+		return true;
+	}
+
+	/**
+	 * Reserve the space needed by the export on the target file system
+	 * 
+	 * @param targetStore the file system of the destination
+	 * @param destination the destination folder
+	 * @param estimate the sizes of the exported files
+	 * @return false if there is not enough free space
+	 * @throws IOException
+	 */
+	private boolean reserveSpace(FileStore targetStore, Path destination, ExportEstimate estimate) throws IOException {
+		long required = getRequiredSpace(destination, estimate);
+		spaceReservation = DiskSpaceReservation.reserve(targetStore, required, minimumFreeSpace * 1024 * 1024);
+		if (spaceReservation == null) {
+			String message = "Not enough free space for the export into " + destination + ": "
+					+ ExportStatistics.formatBytes(required) + " required, "
+					+ ExportStatistics.formatBytes(DiskSpaceReservation.getAvailable(targetStore)) + " available";
+			log.error(message);
+			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR, message);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The archive is estimated with the uncompressed size of the files, as images are mostly stored without
+	 * compression. When the archive is created from the copied folder, both exist at the same time.
+	 * 
+	 * @param destination the destination folder
+	 * @param estimate the sizes of the exported files
+	 * @return the number of bytes the export needs on the target
+	 * @throws IOException
+	 */
+	private long getRequiredSpace(Path destination, ExportEstimate estimate) throws IOException {
+		if (!createZipPerProcess) {
+			return estimate.getBytesToWrite();
+		}
+		Path archiveFile = getArchiveFile(destination);
+		long existingArchive = Files.isRegularFile(archiveFile) ? Files.size(archiveFile) : 0;
+		long archive = Math.max(0, estimate.getBytes() - existingArchive);
+		return createZipDirectly ? archive : estimate.getBytesToWrite() + archive;
+	}
+
+	/**
+	 * Write all files of an OCR folder into a single archive in the background. On network storage this is much faster
+	 * than creating thousands of small files.
+	 * 
+	 * @param folder the OCR folder, e.g. the ALTO files
+	 * @param destination the export destination
+	 * @param statistics the statistics of the export
+	 * @return the task writing the archive
+	 */
+	private Callable<Void> getOcrBundleTask(Path folder, Path destination, ExportStatistics statistics) {
+		return () -> {
+			ExportStatistics.Timer timer = statistics.start(ExportStatistics.OCR_BUNDLE);
+			String name = folder.getFileName().toString();
+			Path bundle = destination.resolve(name + ocrBundleFormat.getExtension());
+			// the text files are always compressed, one bundle is written per thread
+			try (PackageArchiveWriter writer = getArchiveWriter(bundle, ocrBundleFormat, null, 1)) {
+				writer.addFolder(folder, name);
+			}
+			timer.stop(Files.size(bundle), 1);
+			return null;
+		};
+	}
+
+	private PackageArchiveWriter getArchiveWriter(Path zipDestination) throws IOException {
+		return getArchiveWriter(zipDestination, archiveFormat, zipStoredExtensions, zipThreads);
+	}
+
+	private PackageArchiveWriter getArchiveWriter(Path file, ArchiveFormat format, String storedExtensions, int threads)
+			throws IOException {
+		if (format != ArchiveFormat.ZIP) {
+			return new TarPackageWriter(file, format, zipCompressionLevel, threads);
+		}
+		ZipCompressionPolicy policy = new ZipCompressionPolicy(storedExtensions, zipCompressionLevel);
+		if (threads > 1) {
+			return new ParallelZipWriter(file, policy, threads);
+		}
+		return new ZipPackageWriter(file, policy);
+	}
+
+	/**
+	 * @param destination the folder of the package
+	 * @return the archive file next to the folder, named after the folder
+	 */
+	private Path getArchiveFile(Path destination) {
+		return destination.resolveSibling(destination.getFileName() + archiveFormat.getExtension());
+	}
+
 	static String getDateFormat(long currentTimeMillis) {
 
 		DateTime dt = new DateTime(currentTimeMillis);
@@ -662,6 +1081,366 @@ public class ExportPackageStepPlugin implements IStepPluginVersion2 {
 		return formattedDate.toString();
 	}
 
+	/**
+	 * Add the internal meta file and all configured additional folders to the export
+	 * 
+	 * @param plan the plan to extend
+	 * @param destination the export destination
+	 * @param ocrBundles receives the OCR folders, that are bundled into a single archive each instead of being copied
+	 * @throws IOException
+	 * @throws SwapException
+	 */
+	private void addAdditionalFolders(ExportPlan plan, Path destination, List<Path> ocrBundles)
+			throws IOException, SwapException {
+		// copy the internal meta.xml file
+		if (copyInternalMetaFile) {
+			plan.addFile("meta", Paths.get(process.getMetadataFilePath()),
+					Paths.get(destination.toString(), process.getTitel() + "_meta.xml"));
+		}
+
+		// export ocr results
+		if (includeOcr) {
+			Path ocrFolder = Paths.get(process.getOcrDirectory());
+			if (ocrFolder != null && Files.exists(ocrFolder)) {
+				List<Path> ocrData = StorageProvider.getInstance().listFiles(ocrFolder.toString());
+				for (Path path : ocrData) {
+					Path target = Paths.get(destination.toString(), path.getFileName().toString());
+					if (Files.isDirectory(path) && ocrBundleFormat != null) {
+						ocrBundles.add(path);
+					} else if (Files.isDirectory(path)) {
+						plan.addFolder("ocr", path, target, null, transferStrategy);
+					} else {
+						plan.addFile("ocr", path, target, transferStrategy);
+					}
+				}
+			}
+		}
+
+		// export source folder
+		if (includeSource) {
+			Path sourceFolder = Paths.get(process.getSourceDirectory());
+			if (sourceFolder != null && Files.exists(sourceFolder)) {
+				plan.addFolder("source", sourceFolder, Paths.get(destination.toString(), process.getTitel() + "_source"),
+						null, transferStrategy);
+			}
+		}
+
+		// export import folder
+		if (includeImport) {
+			Path importFolder = Paths.get(process.getImportDirectory());
+			if (importFolder != null && Files.exists(importFolder)) {
+				plan.addFolder("import", importFolder, Paths.get(destination.toString(), process.getTitel() + "_import"),
+						null, transferStrategy);
+			}
+		}
+
+		// export export folder
+		if (includeExport) {
+			Path exportFolder = Paths.get(process.getExportDirectory());
+			if (exportFolder != null && Files.exists(exportFolder)) {
+				plan.addFolder("export", exportFolder, Paths.get(destination.toString(), process.getTitel() + "_export"),
+						null, transferStrategy);
+			}
+		}
+
+		// export ITM folder
+		if (includeITM) {
+			Path itmFolder = Paths.get(process.getProcessDataDirectory() + "taskmanager");
+			if (itmFolder != null && Files.exists(itmFolder)) {
+				plan.addFolder("itm", itmFolder, Paths.get(destination.toString(), itmFolder.getFileName().toString()),
+						null, transferStrategy);
+			}
+		}
+
+		// export validation folder
+		if (includeValidation) {
+			Path validationFolder = Paths.get(process.getProcessDataDirectory() + "validation");
+			if (validationFolder != null && Files.exists(validationFolder)) {
+				plan.addFolder("validation", validationFolder,
+						Paths.get(destination.toString(), validationFolder.getFileName().toString()), null,
+						transferStrategy);
+			}
+		}
+	}
+
+	/**
+	 * Find the files that were exported into the destination by a previous export and have not changed since
+	 * 
+	 * @param plan the files of the current export
+	 * @param destination the destination folder
+	 * @param previousManifest the package manifest of the previous export
+	 * @return the entries that don't need to be copied again
+	 * @throws IOException
+	 */
+	private Set<ExportPlan.Entry> getUnchangedEntries(ExportPlan plan, Path destination, PackageManifest previousManifest)
+			throws IOException {
+		Set<ExportPlan.Entry> unchanged = new HashSet<>();
+		if (previousManifest.isEmpty()) {
+			return unchanged;
+		}
+		for (ExportPlan.Entry entry : plan.getEntries()) {
+			if (entry.isDirectory()) {
+				continue;
+			}
+			String name = getPackageName(destination, entry);
+			// files that need a checksum are only skipped, if the checksum is known from the previous export
+			if (previousManifest.isUnchanged(name, entry.getSource(), entry.getTarget())
+					&& (entry.getChecksumType() == null || previousManifest.get(name).getDigest() != null)) {
+				unchanged.add(entry);
+			}
+		}
+		return unchanged;
+	}
+
+	/**
+	 * Delete all files of a previous export whose source is not part of the current export anymore. Folders that
+	 * become empty are removed as well.
+	 * 
+	 * @param plan the files of the current export
+	 * @param destination the destination folder
+	 * @param previousManifest the package manifest of the previous export
+	 * @throws IOException
+	 */
+	private void deleteRemovedFiles(ExportPlan plan, Path destination, PackageManifest previousManifest)
+			throws IOException {
+		Set<String> names = new HashSet<>();
+		for (ExportPlan.Entry entry : plan.getEntries()) {
+			names.add(getPackageName(destination, entry));
+		}
+		for (String name : previousManifest.getRemovedNames(names)) {
+			Path file = destination.resolve(name);
+			Files.deleteIfExists(file);
+			Path parent = file.getParent();
+			while (!parent.equals(destination) && isEmptyDirectory(parent)) {
+				Files.delete(parent);
+				parent = parent.getParent();
+			}
+		}
+	}
+
+	private static boolean isEmptyDirectory(Path folder) throws IOException {
+		if (!Files.isDirectory(folder)) {
+			return false;
+		}
+		try (Stream<Path> children = Files.list(folder)) {
+			return !children.findAny().isPresent();
+		}
+	}
+
+	/**
+	 * Write the package manifest of the current export into the destination folder
+	 * 
+	 * @param plan the files of the current export
+	 * @param destination the destination folder
+	 * @param result the result containing the checksums of copied and unchanged files
+	 * @throws IOException
+	 */
+	private void writePackageManifest(ExportPlan plan, Path destination, ParallelExporter.Result result)
+			throws IOException {
+		PackageManifest manifest = new PackageManifest(checksumType);
+		Map<String, Map<String, String>> checksums = new HashMap<>();
+		for (ExportPlan.Entry entry : plan.getEntries()) {
+			if (!entry.isDirectory()) {
+				String digest = checksums.computeIfAbsent(entry.getLabel(), result::getChecksums)
+						.get(entry.getRelativeName());
+				manifest.add(getPackageName(destination, entry), entry.getSource(), digest);
+			}
+		}
+		manifest.write(destination.resolve(PackageManifest.FILE_NAME));
+	}
+
+	private static String getPackageName(Path destination, ExportPlan.Entry entry) {
+		return HashingCopier.getRelativeName(destination, entry.getTarget());
+	}
+
+	/**
+	 * Check if the checksums of an image folder are calculated while the files are copied
+	 * 
+	 * @param checksumIndex the checksums of the image folders or null, if checksums are not used
+	 * @param folder the image folder
+	 * @return true if the checksums are calculated during the copy
+	 */
+	private boolean isHashWhileCopying(ChecksumIndex checksumIndex, Path folder) {
+		if (getChecksums(checksumIndex, folder) == null) {
+			return writeMissingChecksumFiles || incrementalExport || asynchronousExport;
+		}
+		// a zip file written directly from the original files can only be validated while writing, an incremental
+		// or resumed export knows the checksums of unchanged files from the package manifest or the journal
+		return createZipDirectly || incrementalExport || asynchronousExport
+				|| hashWhileCopying && !useChecksumValidationCommand;
+	}
+
+	/**
+	 * Validate an exported image folder, if a checksum file exists. If the folder has no checksum file, a new one is
+	 * written from the checksums calculated during the copy, if configured.
+	 * 
+	 * @param folder the image folder
+	 * @param currentDestination the exported folder
+	 * @param checksumIndex the checksums of the image folders or null, if checksums are not used
+	 * @param checksums the checksums calculated while copying, if any
+	 * @return false, if the exported files don't match the checksum file
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean validateImageFolder(Path folder, Path currentDestination, ChecksumIndex checksumIndex,
+			Map<String, String> checksums) throws IOException, InterruptedException {
+		Map<String, String> manifest = getChecksums(checksumIndex, folder);
+		if (manifest == null) {
+			if (writeMissingChecksumFiles) {
+				HashingCopier.writeManifest(checksums,
+						currentDestination.resolveSibling(folder.getFileName() + checksumFileExtension));
+			}
+			return true;
+		}
+
+		if (isHashWhileCopying(checksumIndex, folder)) {
+			// the checksums were calculated while copying, the exported files don't need to be read again
+			List<String> mismatches = HashingCopier.getMismatches(manifest, checksums);
+			if (!mismatches.isEmpty()) {
+				log.info("Checksum mismatch for {} files in {}, copying them again", mismatches.size(), currentDestination);
+				HashingCopier copier = new HashingCopier(checksumType);
+				for (String fileName : mismatches) {
+					Path source = folder.resolve(fileName);
+					if (StorageProvider.getInstance().isFileExists(source)) {
+						checksums.put(fileName, copier.copyFile(source, currentDestination.resolve(fileName)));
+					}
+				}
+				mismatches = HashingCopier.getMismatches(manifest, checksums);
+			}
+			if (!mismatches.isEmpty()) {
+				Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+						"checksum missmatch for files in " + folder.getFileName() + ": " + summarize(mismatches));
+				return false;
+			}
+			return true;
+		} else if (!useChecksumValidationCommand) {
+			return verifyExportedFolder(manifest, folder, currentDestination);
+		}
+		Path checksumFile = checksumIndex.getChecksumFile(folder.getFileName().toString());
+		if (!validateExportedFolder(checksumFile, currentDestination)) {
+			// validation not successful, try it again, the exported files might be links to the source
+			StorageProvider.getInstance().deleteDir(currentDestination);
+			StorageProvider.getInstance().copyDirectory(folder, currentDestination);
+			// validation still not successful, maybe checksums are outdated?, abort
+			return validateExportedFolder(checksumFile, currentDestination);
+		}
+		return true;
+	}
+
+	/**
+	 * Shorten a list of file names or messages for the process log
+	 * 
+	 * @param values the values to list
+	 * @return the first values, followed by the number of omitted values
+	 */
+	static String summarize(List<String> values) {
+		int limit = 10;
+		if (values.size() <= limit) {
+			return String.join(", ", values);
+		}
+		return String.join(", ", values.subList(0, limit)) + " and " + (values.size() - limit) + " more";
+	}
+
+	/**
+	 * Calculate the checksums of all image folders without checksum file and store them in the validation folder of
+	 * the process, so that they can be used by later exports and other tasks. All configured checksum types are
+	 * calculated in a single pass over the files.
+	 * 
+	 * @param validationFolder the folder containing the checksum files of the process
+	 * @param checksumFiles the existing checksum files
+	 * @param imageFolders the image folders to export
+	 * @param statistics records the duration of the calculation
+	 * @return the written checksum files
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private List<Path> generateChecksumFiles(Path validationFolder, List<Path> checksumFiles,
+			Collection<Path> imageFolders, ExportStatistics statistics) throws IOException, InterruptedException {
+		Set<String> existing = new HashSet<>();
+		for (Path checksumFile : checksumFiles) {
+			existing.add(checksumFile.getFileName().toString().replace(checksumFileExtension, ""));
+		}
+		List<String> checksumTypes = new ArrayList<>();
+		checksumTypes.add(checksumType);
+		checksumTypes.addAll(additionalChecksumTypes);
+		ParallelHasher hasher = new ParallelHasher(checksumTypes, checksumValidationThreads);
+		List<Path> generated = new ArrayList<>();
+		long files = 0;
+		ExportStatistics.Timer timer = statistics.start(ExportStatistics.CHECKSUM_GENERATION);
+		for (Path folder : imageFolders) {
+			String folderName = folder.getFileName().toString();
+			if (existing.contains(folderName) || !StorageProvider.getInstance().isDirectory(folder)) {
+				continue;
+			}
+			Map<String, Map<String, String>> checksums = hasher.hash(folder);
+			Files.createDirectories(validationFolder);
+			for (String type : checksumTypes) {
+				String extension = type.equals(checksumType) ? checksumFileExtension : ParallelHasher.getFileExtension(type);
+				Path checksumFile = validationFolder.resolve(folderName + extension);
+				HashingCopier.writeManifest(checksums.get(type), checksumFile);
+				generated.add(checksumFile);
+			}
+			files += checksums.get(checksumType).size();
+			Helper.addMessageToProcessLog(process.getId(), LogType.INFO, "Generated " + String.join(", ", checksumTypes)
+					+ " checksums for " + checksums.get(checksumType).size() + " files of folder " + folderName + ".");
+		}
+		if (!generated.isEmpty()) {
+			timer.stop(hasher.getBytes(), files);
+		}
+		return generated;
+	}
+
+	/**
+	 * Get the checksums of an image folder
+	 * 
+	 * @param checksumIndex the checksums of the image folders or null, if checksums are not used
+	 * @param folder the image folder
+	 * @return map of file name to checksum or null, if the folder has no checksum file
+	 */
+	private Map<String, String> getChecksums(ChecksumIndex checksumIndex, Path folder) {
+		if (!includeChecksum || checksumIndex == null) {
+			return null;
+		}
+		return checksumIndex.getChecksums(folder.getFileName().toString());
+	}
+
+	/**
+	 * Verify the exported files against the checksum file within the JVM. Files that don't match are copied again and
+	 * verified a second time, all other files are left untouched.
+	 * 
+	 * @param manifest the checksums of the image folder
+	 * @param folder the source folder
+	 * @param currentDestination the exported folder
+	 * @return true if all files match after the second attempt
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean verifyExportedFolder(Map<String, String> manifest, Path folder, Path currentDestination)
+			throws IOException, InterruptedException {
+		ChecksumVerifier verifier = new ChecksumVerifier(checksumType, checksumValidationThreads);
+		List<String> mismatches = verifier.verify(manifest, currentDestination, manifest.keySet());
+		if (mismatches.isEmpty()) {
+			return true;
+		}
+		log.info("Checksum mismatch for {} files in {}, copying them again", mismatches.size(), currentDestination);
+		for (String fileName : mismatches) {
+			Path source = folder.resolve(fileName);
+			if (StorageProvider.getInstance().isFileExists(source)) {
+				// never write into the exported file, it might be a link to the source
+				Files.deleteIfExists(currentDestination.resolve(fileName));
+				StorageProvider.getInstance().copyFile(source, currentDestination.resolve(fileName));
+			}
+		}
+		mismatches = verifier.verify(manifest, currentDestination, mismatches);
+		if (!mismatches.isEmpty()) {
+			// validation still not successful, maybe checksums are outdated?
+			Helper.addMessageToProcessLog(process.getId(), LogType.ERROR,
+					"checksum missmatch for files in " + folder.getFileName() + ": " + summarize(mismatches));
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * validation of the exported files.
 	 * 
@@ -669,68 +1448,75 @@ public class ExportPackageStepPlugin implements IStepPluginVersion2 {
 	 * file or true in all other cases (validation successful, no checksum file
 	 * found)
 	 * 
-	 * @param checksumFiles
-	 * @param folder
+	 * @param checksumFile the checksum file of the image folder
 	 * @param currentDestination
 	 * @return
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
 
-	private boolean validateExportedFolder(List<Path> checksumFiles, Path folder, Path currentDestination)
+	private boolean validateExportedFolder(Path checksumFile, Path currentDestination)
 			throws IOException, InterruptedException {
-		for (Path checksumFile : checksumFiles) {
-			if (checksumFile.getFileName().toString().replace(checksumFileExtension, "")
-					.equals(folder.getFileName().toString())) {
-				// found checksum file for current folder
-				ProcessBuilder builder = new ProcessBuilder().directory(currentDestination.toFile())
-						.command(checksumValidationCommand, "--check", "--quiet", checksumFile.toString());
-				java.lang.Process validation = builder.start();
-				int response = validation.waitFor();
-				if (response != 0) {
-					InputStream stdErr = validation.getErrorStream();
-					LinkedList<String> result = new LinkedList<>();
-					Scanner inputLines = null;
-					try {
-						inputLines = new Scanner(stdErr);
-						while (inputLines.hasNextLine()) {
-							String myLine = inputLines.nextLine();
-							result.add(myLine);
-						}
-					} finally {
-						if (inputLines != null) {
-							inputLines.close();
-						}
-						if (stdErr != null) {
-							stdErr.close();
-						}
-					}
-					return false;
+		ProcessBuilder builder = new ProcessBuilder().directory(currentDestination.toFile())
+				.command(checksumValidationCommand, "--check", "--quiet", checksumFile.toString());
+		java.lang.Process validation = builder.start();
+		int response = validation.waitFor();
+		if (response != 0) {
+			InputStream stdErr = validation.getErrorStream();
+			LinkedList<String> result = new LinkedList<>();
+			Scanner inputLines = null;
+			try {
+				inputLines = new Scanner(stdErr);
+				while (inputLines.hasNextLine()) {
+					String myLine = inputLines.nextLine();
+					result.add(myLine);
+				}
+			} finally {
+				if (inputLines != null) {
+					inputLines.close();
+				}
+				if (stdErr != null) {
+					stdErr.close();
 				}
 			}
+			return false;
 		}
 		return true;
 	}
 
-	private static Document readDocument(Path path) {
-		SAXBuilder builder = new SAXBuilder();
-		Document document = null;
-		try {
-			document = builder.build(path.toFile());
-		} catch (JDOMException | IOException e) {
-			log.error(e);
+	/**
+	 * Get the checksums of all image folders that are assigned to a file group
+	 * 
+	 * @param checksumIndex the checksums of the image folders
+	 * @param imageFolderPaths the resolved image folders
+	 * @return map of file group name to the checksums of the files in this group
+	 */
+	private Map<String, Map<String, String>> getChecksumsPerFileGroup(ChecksumIndex checksumIndex,
+			Map<String, Path> imageFolderPaths) {
+		Map<String, Map<String, String>> checksumsPerFileGroup = new HashMap<>();
+		for (Entry<String, String> entry : imagefolders.entrySet()) {
+			String fileGroupName = entry.getValue();
+			if (fileGroupName == null) {
+				continue;
+			}
+			Map<String, String> checksums = checksumIndex
+					.getChecksumsByBaseName(imageFolderPaths.get(entry.getKey()).getFileName().toString());
+			if (checksums != null) {
+				checksumsPerFileGroup.put(fileGroupName, checksums);
+			}
 		}
-		return document;
+		return checksumsPerFileGroup;
 	}
 
-	private static void writeDocument(Document document, Path path) {
-		XMLOutputter xmlOutput = new XMLOutputter();
-		xmlOutput.setFormat(Format.getPrettyFormat());
-		try (Writer w = new FileWriter(path.toString())) {
-			xmlOutput.output(document, w);
-		} catch (IOException e) {
-			log.error(e);
-		}
+	/**
+	 * Read a checksum file as created by sha1sum or md5sum
+	 * 
+	 * @param checksumFile the file to read
+	 * @return map of file name without extension to checksum
+	 * @throws IOException
+	 */
+	static Map<String, String> readChecksumFile(Path checksumFile) throws IOException {
+		return ChecksumIndex.toBaseNames(ChecksumIndex.parse(checksumFile));
 	}
 
 	private DirectoryStream.Filter<Path> checksumFilter = new DirectoryStream.Filter<Path>() {
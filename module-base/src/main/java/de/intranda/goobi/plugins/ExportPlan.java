@@ -0,0 +1,156 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+
+/**
+ * List of all files and folders that are part of an export. Each entry belongs to a named folder, so that errors and
+ * checksums can be reported per folder after the plan was executed by the {@link ParallelExporter}.
+ */
+public class ExportPlan {
+
+	@Getter
+	private final List<Entry> entries = new ArrayList<>();
+
+	/**
+	 * Add all files of a folder recursively. Empty folders are kept as well.
+	 * 
+	 * @param label the name of the folder used for error reporting
+	 * @param source the folder to export
+	 * @param target the destination of the folder
+	 * @param checksumType the checksum to calculate while copying or null, if no checksum is needed
+	 * @throws IOException
+	 */
+	public void addFolder(String label, Path source, Path target, String checksumType) throws IOException {
+		addFolder(label, source, target, checksumType, TransferStrategy.COPY);
+	}
+
+	/**
+	 * Add all files of a folder recursively. Empty folders are kept as well.
+	 * 
+	 * @param label the name of the folder used for error reporting
+	 * @param source the folder to export
+	 * @param target the destination of the folder
+	 * @param checksumType the checksum to calculate while copying or null, if no checksum is needed
+	 * @param transferStrategy the way the files are transferred
+	 * @throws IOException
+	 */
+	public void addFolder(String label, Path source, Path target, String checksumType,
+			TransferStrategy transferStrategy) throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try (Stream<Path> stream = Files.walk(source)) {
+			stream.forEach(paths::add);
+		}
+		for (Path path : paths) {
+			boolean directory = Files.isDirectory(path);
+			if (directory && !isEmptyDirectory(path)) {
+				continue;
+			}
+			String relativeName = HashingCopier.getRelativeName(source, path);
+			Path destination = relativeName.isEmpty() ? target : target.resolve(relativeName);
+			entries.add(new Entry(label, path, destination, relativeName, directory, checksumType, transferStrategy));
+		}
+	}
+
+	/**
+	 * Add a single file
+	 * 
+	 * @param label the name used for error reporting
+	 * @param source the file to export
+	 * @param target the destination file
+	 */
+	public void addFile(String label, Path source, Path target) {
+		addFile(label, source, target, TransferStrategy.COPY);
+	}
+
+	/**
+	 * Add a single file
+	 * 
+	 * @param label the name used for error reporting
+	 * @param source the file to export
+	 * @param target the destination file
+	 * @param transferStrategy the way the file is transferred
+	 */
+	public void addFile(String label, Path source, Path target, TransferStrategy transferStrategy) {
+		entries.add(new Entry(label, source, target, source.getFileName().toString(), false, null, transferStrategy));
+	}
+
+	/**
+	 * Create a plan containing only some of the entries
+	 * 
+	 * @param filter decides which entries to keep
+	 * @return the new plan
+	 */
+	public ExportPlan filter(Predicate<Entry> filter) {
+		ExportPlan plan = new ExportPlan();
+		for (Entry entry : entries) {
+			if (filter.test(entry)) {
+				plan.entries.add(entry);
+			}
+		}
+		return plan;
+	}
+
+	public List<Entry> getEntries(String label) {
+		List<Entry> result = new ArrayList<>();
+		for (Entry entry : entries) {
+			if (entry.getLabel().equals(label)) {
+				result.add(entry);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private static boolean isEmptyDirectory(Path path) throws IOException {
+		try (Stream<Path> children = Files.list(path)) {
+			Iterator<Path> it = children.iterator();
+			return !it.hasNext();
+		}
+	}
+
+	public static class Entry {
+		@Getter
+		private final String label;
+		@Getter
+		private final Path source;
+		@Getter
+		private final Path target;
+		/** path relative to the exported folder, used as key for checksums */
+		@Getter
+		private final String relativeName;
+		@Getter
+		private final boolean directory;
+		@Getter
+		private final String checksumType;
+		@Getter
+		private final TransferStrategy transferStrategy;
+		/** the known checksum of the source, e.g. from the checksum file of the folder, or null */
+		@Getter
+		private String digest;
+
+		public Entry(String label, Path source, Path target, String relativeName, boolean directory,
+				String checksumType, TransferStrategy transferStrategy) {
+			this.label = label;
+			this.source = source;
+			this.target = target;
+			this.relativeName = relativeName;
+			this.directory = directory;
+			this.checksumType = checksumType;
+			this.transferStrategy = transferStrategy;
+		}
+
+		void setDigest(String digest) {
+			this.digest = digest;
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Files and bytes copied by a running export compared to the totals of the pre-flight estimate. The progress is updated
+ * by the copy threads and can be read at any time, e.g. via JMX.
+ */
+@Log4j2
+public class ExportProgress {
+
+	@Getter
+	private final String name;
+	@Getter
+	private volatile long totalFiles;
+	@Getter
+	private volatile long totalBytes;
+	private final AtomicLong files = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	// the last tenth of the total that was written into the log
+	private final AtomicInteger loggedTenth = new AtomicInteger();
+	private volatile long startNanos;
+
+	/**
+	 * @param name the name used in the log, e.g. the process title
+	 */
+	public ExportProgress(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Start measuring the progress towards new totals
+	 * 
+	 * @param totalFiles the number of files to copy
+	 * @param totalBytes the number of bytes to copy
+	 */
+	public void start(long totalFiles, long totalBytes) {
+		this.totalFiles = totalFiles;
+		this.totalBytes = totalBytes;
+		files.set(0);
+		bytes.set(0);
+		loggedTenth.set(0);
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Add a copied file, may be called from several threads at the same time
+	 * 
+	 * @param size the size of the file
+	 */
+	public void add(long size) {
+		files.incrementAndGet();
+		long done = bytes.addAndGet(size);
+		if (totalBytes > 0) {
+			int tenth = (int) Math.min(10, done * 10 / totalBytes);
+			int logged = loggedTenth.get();
+			if (tenth > logged && loggedTenth.compareAndSet(logged, tenth)) {
+				log.info("Export of {}: {}", name, getSummary());
+			}
+		}
+	}
+
+	public long getFiles() {
+		return files.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return the copied part of the total bytes from 0 to 100
+	 */
+	public int getPercent() {
+		long total = totalBytes;
+		if (total <= 0) {
+			return totalFiles <= 0 ? 100 : (int) Math.min(100, getFiles() * 100 / totalFiles);
+		}
+		return (int) Math.min(100, getBytes() * 100 / total);
+	}
+
+	/**
+	 * @return the estimated remaining time in milliseconds based on the throughput so far, -1 if nothing was copied yet
+	 */
+	public long getRemainingMillis() {
+		long done = getBytes();
+		long elapsed = System.nanoTime() - startNanos;
+		if (done <= 0 || elapsed <= 0) {
+			return -1;
+		}
+		return (long) ((totalBytes - done) * (elapsed / 1_000_000d) / done);
+	}
+
+	/**
+	 * @return a single line with files, bytes and remaining time
+	 */
+	public String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(ExportStatistics.formatBytes(getBytes()))
+				.append(" of ")
+				.append(ExportStatistics.formatBytes(totalBytes))
+				.append(", ")
+				.append(getFiles())
+				.append(" of ")
+				.append(totalFiles)
+				.append(" files (")
+				.append(getPercent())
+				.append(" %)");
+		long remaining = getRemainingMillis();
+		if (remaining >= 0 && getBytes() < totalBytes) {
+			summary.append(", about ")
+					.append(ExportStatistics.formatSeconds(remaining * 1_000_000))
+					.append(" remaining");
+		}
+		return summary.toString();
+	}
+
+}
@@ -0,0 +1,124 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.goobi.beans.Step;
+import org.goobi.production.enums.LogType;
+import org.goobi.production.enums.PluginReturnValue;
+
+import de.sub.goobi.helper.CloseStepHelper;
+import de.sub.goobi.helper.Helper;
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.persistence.managers.StepManager;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * JVM wide queue of asynchronous exports. The exports are executed by a small number of background workers, which
+ * close the step after a successful export or set it to error otherwise. The queue is kept in memory only: exports
+ * that are queued or running when the application stops are not started again automatically, but resumed from their
+ * journal when the step is run again.
+ */
+@Log4j2
+public class ExportQueue {
+
+	private static final ExportQueue INSTANCE = new ExportQueue();
+
+	static final int DEFAULT_THREADS = 4;
+
+	private final AtomicInteger threadNumber = new AtomicInteger();
+	private final ThreadPoolExecutor worker = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+				Thread thread = new Thread(runnable, "export-package-worker-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+	private final Set<Integer> queuedSteps = ConcurrentHashMap.newKeySet();
+
+	ExportQueue() {
+		worker.allowCoreThreadTimeOut(true);
+	}
+
+	public static ExportQueue getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param threads the number of asynchronous exports running at the same time, further exports wait in the queue
+	 */
+	public synchronized void setThreads(int threads) {
+		int size = Math.max(1, threads);
+		// the maximum size must never be smaller than the core size
+		if (size > worker.getMaximumPoolSize()) {
+			worker.setMaximumPoolSize(size);
+			worker.setCorePoolSize(size);
+		} else {
+			worker.setCorePoolSize(size);
+			worker.setMaximumPoolSize(size);
+		}
+	}
+
+	public int getThreads() {
+		return worker.getMaximumPoolSize();
+	}
+
+	/**
+	 * Add an initialized plugin to the queue
+	 * 
+	 * @param plugin the plugin to execute
+	 * @return false if the step is already queued
+	 */
+	public boolean submit(ExportPackageStepPlugin plugin) {
+		Integer stepId = plugin.getStep().getId();
+		if (!queuedSteps.add(stepId)) {
+			return false;
+		}
+		worker.execute(() -> {
+			try {
+				execute(plugin);
+			} finally {
+				queuedSteps.remove(stepId);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * @return the number of queued and running exports
+	 */
+	public int getSize() {
+		return queuedSteps.size();
+	}
+
+	private void execute(ExportPackageStepPlugin plugin) {
+		Step step = plugin.getStep();
+		Integer processId = step.getProzess().getId();
+		PluginReturnValue result;
+		try {
+			result = plugin.runExport();
+		} catch (RuntimeException e) {
+			log.error("Error during asynchronous export of process {}", processId, e);
+			Helper.addMessageToProcessLog(processId, LogType.ERROR,
+					"Error during asynchronous export: " + e.getMessage());
+			result = PluginReturnValue.ERROR;
+		}
+		if (result == PluginReturnValue.ERROR) {
+			Helper.addMessageToProcessLog(processId, LogType.INFO,
+					"The export can be resumed by running the step " + step.getTitel() + " again.");
+			step.setBearbeitungsstatusEnum(StepStatus.ERROR);
+			try {
+				StepManager.saveStep(step);
+			} catch (DAOException e) {
+				log.error("Error saving step {}", step.getId(), e);
+			}
+		} else {
+			CloseStepHelper.closeStep(step, null);
+		}
+	}
+
+}
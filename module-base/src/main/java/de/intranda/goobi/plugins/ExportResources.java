@@ -0,0 +1,51 @@
+package de.intranda.goobi.plugins;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.goobi.beans.Ruleset;
+
+import lombok.Getter;
+import ugh.dl.Prefs;
+
+/**
+ * Resources shared by all exports of a batch: the worker pools for copying files and for the METS and XSLT tasks,
+ * and the parsed rulesets. The copy pool limits the number of files copied at the same time across all processes.
+ */
+public class ExportResources implements Closeable {
+
+	@Getter
+	private final ExecutorService copyExecutor;
+	@Getter
+	private final ExecutorService documentExecutor;
+	private final Map<Integer, Prefs> preferences = new ConcurrentHashMap<>();
+
+	/**
+	 * @param copyThreads the number of files to copy at the same time for all processes together
+	 * @param documentThreads the number of METS rewrites and transformations to run at the same time
+	 */
+	public ExportResources(int copyThreads, int documentThreads) {
+		this.copyExecutor = Executors.newFixedThreadPool(Math.max(1, copyThreads));
+		this.documentExecutor = Executors.newFixedThreadPool(Math.max(1, documentThreads));
+	}
+
+	/**
+	 * Get the parsed ruleset, each ruleset is parsed only once per batch
+	 * 
+	 * @param ruleset the ruleset of a process
+	 * @return the preferences of the ruleset
+	 */
+	public Prefs getPreferences(Ruleset ruleset) {
+		return preferences.computeIfAbsent(ruleset.getId(), id -> ruleset.getPreferences());
+	}
+
+	@Override
+	public void close() {
+		copyExecutor.shutdownNow();
+		documentExecutor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,195 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Wall time, bytes and number of files of the phases of a single export. Phases can be recorded from several threads.
+ * Files and bytes of a phase can be broken down into details, e.g. the exported folders.
+ */
+public class ExportStatistics {
+
+	public static final String PREFLIGHT = "pre-flight";
+	public static final String METS_EXPORT = "mets export";
+	public static final String CHECKSUM_GENERATION = "checksum generation";
+	public static final String COPY = "copy";
+	public static final String VALIDATION = "checksum validation";
+	public static final String METS_REWRITE = "mets rewrite";
+	public static final String METS_TRANSFORMATION = "xslt mets";
+	public static final String META_TRANSFORMATION = "xslt meta";
+	public static final String OCR_BUNDLE = "ocr bundle";
+	public static final String ARCHIVE = "archive";
+	public static final String TOTAL = "total";
+
+	private final Map<String, Phase> phases = new LinkedHashMap<>();
+
+	/**
+	 * Start measuring the wall time of a phase
+	 * 
+	 * @param phase the name of the phase
+	 * @return the timer to stop at the end of the phase
+	 */
+	public Timer start(String phase) {
+		return new Timer(phase, System.nanoTime());
+	}
+
+	/**
+	 * Add time, bytes and files to a phase. A phase can be recorded several times, the values are summed up.
+	 * 
+	 * @param phase the name of the phase
+	 * @param nanos the wall time in nanoseconds
+	 * @param bytes the number of bytes processed
+	 * @param files the number of files processed
+	 */
+	public synchronized void record(String phase, long nanos, long bytes, long files) {
+		phases.computeIfAbsent(phase, Phase::new).add(nanos, bytes, files);
+	}
+
+	/**
+	 * Add bytes and files to a detail of a phase, e.g. a single folder. The time is the summed up time of all threads
+	 * working on this detail, the wall time of the phase itself must be recorded separately.
+	 * 
+	 * @param phase the name of the phase
+	 * @param detail the name of the detail
+	 * @param nanos the time spent in nanoseconds
+	 * @param bytes the number of bytes processed
+	 * @param files the number of files processed
+	 */
+	public synchronized void recordDetail(String phase, String detail, long nanos, long bytes, long files) {
+		Phase p = phases.computeIfAbsent(phase, Phase::new);
+		p.add(0, bytes, files);
+		p.details.computeIfAbsent(detail, Phase::new).add(nanos, bytes, files);
+	}
+
+	/**
+	 * @return a copy of all recorded phases in the order they were started
+	 */
+	public synchronized List<Phase> getPhases() {
+		List<Phase> result = new ArrayList<>();
+		for (Phase phase : phases.values()) {
+			result.add(phase.copy());
+		}
+		return result;
+	}
+
+	/**
+	 * @return a single line summary of all phases for the process log
+	 */
+	public synchronized String getSummary() {
+		StringBuilder summary = new StringBuilder("Export statistics: ");
+		boolean first = true;
+		for (Phase phase : phases.values()) {
+			if (!first) {
+				summary.append(" | ");
+			}
+			first = false;
+			summary.append(phase.getName()).append(' ').append(formatSeconds(phase.getNanos()));
+			String amount = getAmount(phase);
+			if (!amount.isEmpty()) {
+				summary.append(", ").append(amount);
+			}
+			if (phase.getBytes() > 0 && phase.getNanos() > 0) {
+				summary.append(", ").append(formatBytes((long) (phase.getBytes() * 1_000_000_000d / phase.getNanos()))).append("/s");
+			}
+			if (!phase.details.isEmpty()) {
+				List<String> details = new ArrayList<>();
+				for (Phase detail : phase.details.values()) {
+					details.add(detail.getName() + ": " + getAmount(detail));
+				}
+				summary.append(" (").append(String.join("; ", details)).append(')');
+			}
+		}
+		return summary.toString();
+	}
+
+	private static String getAmount(Phase phase) {
+		List<String> parts = new ArrayList<>();
+		if (phase.getFiles() > 0) {
+			parts.add(phase.getFiles() + " files");
+		}
+		if (phase.getBytes() > 0) {
+			parts.add(formatBytes(phase.getBytes()));
+		}
+		return String.join(", ", parts);
+	}
+
+	static String formatSeconds(long nanos) {
+		return String.format(Locale.ENGLISH, "%.1f s", nanos / 1_000_000_000d);
+	}
+
+	static String formatBytes(long bytes) {
+		String[] units = { "B", "KB", "MB", "GB", "TB" };
+		double value = bytes;
+		int unit = 0;
+		while (value >= 1024 && unit < units.length - 1) {
+			value /= 1024;
+			unit++;
+		}
+		return unit == 0 ? bytes + " B" : String.format(Locale.ENGLISH, "%.1f %s", value, units[unit]);
+	}
+
+	public class Timer {
+		private final String phase;
+		private final long start;
+
+		private Timer(String phase, long start) {
+			this.phase = phase;
+			this.start = start;
+		}
+
+		public void stop() {
+			stop(0, 0);
+		}
+
+		/**
+		 * Record the elapsed time together with the processed data
+		 * 
+		 * @param bytes the number of bytes processed
+		 * @param files the number of files processed
+		 */
+		public void stop(long bytes, long files) {
+			record(phase, System.nanoTime() - start, bytes, files);
+		}
+	}
+
+	public static class Phase {
+		@Getter
+		private final String name;
+		@Getter
+		private long nanos;
+		@Getter
+		private long bytes;
+		@Getter
+		private long files;
+		private final Map<String, Phase> details = new LinkedHashMap<>();
+
+		Phase(String name) {
+			this.name = name;
+		}
+
+		private void add(long nanos, long bytes, long files) {
+			this.nanos += nanos;
+			this.bytes += bytes;
+			this.files += files;
+		}
+
+		private Phase copy() {
+			Phase copy = new Phase(name);
+			copy.add(nanos, bytes, files);
+			for (Phase detail : details.values()) {
+				copy.details.put(detail.name, detail.copy());
+			}
+			return copy;
+		}
+
+		public List<Phase> getDetails() {
+			return new ArrayList<>(details.values());
+		}
+	}
+
+}
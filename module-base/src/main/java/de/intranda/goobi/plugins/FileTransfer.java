@@ -0,0 +1,231 @@
+package de.intranda.goobi.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Transfers single files with a {@link TransferStrategy}. If a strategy fails between two folders, it is not tried
+ * again for these folders and the fallback strategy is used instead. Instances can be used by several threads.
+ */
+@Log4j2
+public class FileTransfer {
+
+	/** the copy command of the GNU coreutils, null if there is none in the PATH */
+	private static final Path CP_COMMAND = findCommand("cp");
+	private static final long THROTTLED_TRANSFER_SIZE = 1024 * 1024;
+	/** file systems of the export targets, that were checked for reflink support */
+	private static final Map<FileStore, Boolean> REFLINK_SUPPORT = new ConcurrentHashMap<>();
+
+	/** strategies that failed for a pair of source and target folder */
+	private final Set<String> unsupported = ConcurrentHashMap.newKeySet();
+	private final Map<TransferStrategy, AtomicLong> usage = new ConcurrentHashMap<>();
+
+	/**
+	 * Transfer a file, an existing target is replaced. The modification date of the source is kept.
+	 * 
+	 * @param source the file to transfer
+	 * @param target the destination file
+	 * @param strategy the preferred strategy
+	 * @return the strategy that was actually used
+	 * @throws IOException if the file could not be transferred at all
+	 */
+	public TransferStrategy transfer(Path source, Path target, TransferStrategy strategy) throws IOException {
+		if (target.getParent() != null) {
+			Files.createDirectories(target.getParent());
+		}
+		// never write into an existing file, it might be a link to the source of a previous export
+		Files.deleteIfExists(target);
+		TransferStrategy current = strategy == TransferStrategy.AUTO ? getAutoStrategy(source, target) : strategy;
+		while (current != TransferStrategy.COPY) {
+			String key = current + ":" + source.getParent() + ":" + target.getParent();
+			if (!unsupported.contains(key)) {
+				try {
+					transferWith(source, target, current);
+					usage.computeIfAbsent(current, s -> new AtomicLong()).incrementAndGet();
+					return current;
+				} catch (IOException | UnsupportedOperationException e) {
+					log.debug("Transfer strategy {} failed for {}, using {} instead", current.getName(), target,
+							current.getFallback().getName(), e);
+					unsupported.add(key);
+					Files.deleteIfExists(target);
+				}
+			}
+			current = current.getFallback();
+		}
+		IoGovernor.getInstance().copy(source, target);
+		usage.computeIfAbsent(TransferStrategy.COPY, s -> new AtomicLong()).incrementAndGet();
+		return TransferStrategy.COPY;
+	}
+
+	/**
+	 * @param strategy a transfer strategy
+	 * @return the number of files transferred with this strategy
+	 */
+	public long getUsage(TransferStrategy strategy) {
+		AtomicLong count = usage.get(strategy);
+		return count == null ? 0 : count.get();
+	}
+
+	private static void transferWith(Path source, Path target, TransferStrategy strategy) throws IOException {
+		switch (strategy) {
+			case HARDLINK:
+				Files.createLink(target, source);
+				break;
+			case REFLINK:
+				reflink(source, target);
+				break;
+			case ZERO_COPY:
+				transferTo(source, target);
+				break;
+			default:
+				throw new UnsupportedOperationException(strategy.getName());
+		}
+	}
+
+	private static TransferStrategy getAutoStrategy(Path source, Path target) throws IOException {
+		if (Files.getFileStore(source).equals(Files.getFileStore(target.getParent()))) {
+			return TransferStrategy.REFLINK;
+		}
+		return TransferStrategy.ZERO_COPY;
+	}
+
+	/**
+	 * Clone the file, if the file system of the target supports it. Whether it does is only checked once per file
+	 * system.
+	 */
+	private static void reflink(Path source, Path target) throws IOException {
+		Path directory = target.toAbsolutePath().getParent();
+		FileStore store = Files.getFileStore(directory);
+		// files can only be cloned within the same file system
+		if (!store.equals(Files.getFileStore(source)) || !isReflinkSupported(store, directory)) {
+			throw new UnsupportedOperationException("Reflinks are not supported from " + source + " to " + target);
+		}
+		cloneFile(source, target);
+	}
+
+	private static boolean isReflinkSupported(FileStore store, Path directory) {
+		if (CP_COMMAND == null) {
+			return false;
+		}
+		// an interrupted check is not cached
+		return Boolean.TRUE.equals(REFLINK_SUPPORT.computeIfAbsent(store, s -> probeReflink(directory)));
+	}
+
+	/**
+	 * Clone a small temporary file in the directory
+	 * 
+	 * @return true if the file system supports reflinks, null if the check was interrupted
+	 */
+	private static Boolean probeReflink(Path directory) {
+		Path probe = null;
+		Path clone = null;
+		try {
+			probe = Files.createTempFile(directory, ".reflink-", ".probe");
+			clone = probe.resolveSibling(probe.getFileName() + ".clone");
+			Files.write(probe, new byte[] { 1 });
+			cloneFile(probe, clone);
+			log.info("Files in {} are transferred with reflinks", directory);
+			return true;
+		} catch (IOException e) {
+			if (Thread.currentThread().isInterrupted()) {
+				return null;
+			}
+			log.info("Reflinks are not supported in {}: {}", directory, e.getMessage());
+			return false;
+		} finally {
+			deleteQuietly(probe);
+			deleteQuietly(clone);
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		if (file != null) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				log.warn("Error deleting {}", file, e);
+			}
+		}
+	}
+
+	/**
+	 * Find an executable in the directories of the PATH
+	 * 
+	 * @param name the name of the command
+	 * @return the executable or null, if it is not found
+	 */
+	static Path findCommand(String name) {
+		String path = System.getenv("PATH");
+		if (path == null) {
+			return null;
+		}
+		for (String directory : path.split(File.pathSeparator)) {
+			if (directory.isEmpty()) {
+				continue;
+			}
+			Path command = Paths.get(directory, name);
+			if (Files.isRegularFile(command) && Files.isExecutable(command)) {
+				return command;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Clone the file with the copy command of the GNU coreutils, java has no API for reflinks
+	 */
+	private static void cloneFile(Path source, Path target) throws IOException {
+		ProcessBuilder builder = new ProcessBuilder(CP_COMMAND.toString(), "--reflink=always", "--preserve=timestamps",
+				source.toString(), target.toString());
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		String output = new String(process.getInputStream().readAllBytes()).trim();
+		try {
+			int exitCode = process.waitFor();
+			if (exitCode != 0) {
+				throw new IOException("Reflink of " + source + " failed with exit code " + exitCode + ": " + output);
+			}
+		} catch (InterruptedException e) {
+			process.destroy();
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	private static void transferTo(Path source, Path target) throws IOException {
+		IoGovernor governor = IoGovernor.getInstance();
+		governor.openFile();
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				// with a bandwidth limit the file is transferred in smaller parts, so that it can be throttled
+				long count = governor.getBandwidth() > 0 ? Math.min(size - position, THROTTLED_TRANSFER_SIZE)
+						: size - position;
+				long transferred = in.transferTo(position, count, out);
+				if (transferred <= 0) {
+					throw new IOException("File changed during transfer: " + source);
+				}
+				governor.acquireBytes(transferred);
+				position += transferred;
+			}
+		} finally {
+			governor.closeFile();
+		}
+		Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+	}
+
+}
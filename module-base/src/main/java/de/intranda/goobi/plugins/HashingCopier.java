@@ -0,0 +1,140 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Copies files and calculates their checksums while the bytes pass through, so the exported files don't need to be
+ * read a second time for the validation.
+ */
+public class HashingCopier {
+
+	static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final String algorithm;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * @param checksumType the configured checksum type, e.g. SHA-1 or MD5
+	 */
+	public HashingCopier(String checksumType) {
+		this.algorithm = ChecksumVerifier.getDigestAlgorithm(checksumType);
+	}
+
+	/**
+	 * Copy all files of a folder recursively
+	 * 
+	 * @param source the folder to copy
+	 * @param target the destination folder, gets created if missing
+	 * @return map of the relative file names to their checksums, sorted by name
+	 * @throws IOException
+	 */
+	public Map<String, String> copyDirectory(Path source, Path target) throws IOException {
+		Map<String, String> checksums = new TreeMap<>();
+		List<Path> files = new ArrayList<>();
+		try (Stream<Path> stream = Files.walk(source)) {
+			stream.filter(Files::isRegularFile).forEach(files::add);
+		}
+		Files.createDirectories(target);
+		for (Path file : files) {
+			String relativeName = getRelativeName(source, file);
+			checksums.put(relativeName, copyFile(file, target.resolve(relativeName)));
+		}
+		return checksums;
+	}
+
+	/**
+	 * Copy a single file
+	 * 
+	 * @param source the file to copy
+	 * @param target the destination file, existing files are overwritten
+	 * @return the checksum of the copied bytes
+	 * @throws IOException
+	 */
+	public String copyFile(Path source, Path target) throws IOException {
+		MessageDigest digest = ChecksumVerifier.getMessageDigest(algorithm);
+		if (target.getParent() != null) {
+			Files.createDirectories(target.getParent());
+		}
+		// the target might be a hard link to the source of a previous export
+		Files.deleteIfExists(target);
+		try (InputStream in = IoGovernor.getInstance().newInputStream(source); OutputStream out = Files.newOutputStream(target)) {
+			int length;
+			while ((length = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, length);
+				out.write(buffer, 0, length);
+			}
+		}
+		Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+		return ChecksumVerifier.toHex(digest.digest());
+	}
+
+	/**
+	 * Write a checksum file in the format of the GNU coreutils, so that it can be checked with e.g. 'sha1sum --check'
+	 * from within the folder
+	 * 
+	 * @param checksums map of relative file names to checksums
+	 * @param checksumFile the file to write
+	 * @throws IOException
+	 */
+	public static void writeManifest(Map<String, String> checksums, Path checksumFile) throws IOException {
+		try (OutputStream out = Files.newOutputStream(checksumFile)) {
+			writeManifest(checksums, out);
+		}
+	}
+
+	/**
+	 * Write a checksum file in the format of the GNU coreutils into a stream
+	 * 
+	 * @param checksums map of relative file names to checksums
+	 * @param out the stream to write to, it is flushed but not closed
+	 * @throws IOException
+	 */
+	public static void writeManifest(Map<String, String> checksums, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		for (Entry<String, String> entry : checksums.entrySet()) {
+			writer.write(entry.getValue());
+			writer.write("  ");
+			writer.write(entry.getKey());
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Compare calculated checksums with the expected ones
+	 * 
+	 * @param expected the content of the checksum file
+	 * @param actual the calculated checksums
+	 * @return the names of all files from the checksum file that are missing or have a different checksum
+	 */
+	public static List<String> getMismatches(Map<String, String> expected, Map<String, String> actual) {
+		List<String> mismatches = new ArrayList<>();
+		for (Entry<String, String> entry : expected.entrySet()) {
+			String checksum = actual.get(entry.getKey());
+			if (checksum == null || !checksum.equalsIgnoreCase(entry.getValue())) {
+				mismatches.add(entry.getKey());
+			}
+		}
+		return mismatches;
+	}
+
+	static String getRelativeName(Path folder, Path file) {
+		return folder.relativize(file).toString().replace('\\', '/');
+	}
+
+}
@@ -0,0 +1,33 @@
+package de.intranda.goobi.plugins;
+
+import static de.intranda.goobi.plugins.MetsRewritePipeline.mets;
+import static de.intranda.goobi.plugins.MetsRewritePipeline.xlink;
+
+import org.jdom2.Element;
+
+/**
+ * Replaces a part of the xlink:href of each mets:FLocat, e.g. to point the links to the generated folder name
+ */
+public class HrefReplacementStep implements MetsRewriteStep {
+
+	private final String searchValue;
+	private final String replacement;
+
+	public HrefReplacementStep(String searchValue, String replacement) {
+		this.searchValue = searchValue;
+		this.replacement = replacement;
+	}
+
+	@Override
+	public void apply(Element root) {
+		Element fileSec = root.getChild("fileSec", mets);
+		for (Element fileGroup : fileSec.getChildren()) {
+			for (Element file : fileGroup.getChildren()) {
+				Element location = file.getChild("FLocat", mets);
+				String ref = location.getAttributeValue("href", xlink);
+				location.setAttribute("href", ref.replace(searchValue, replacement), xlink);
+			}
+		}
+	}
+
+}
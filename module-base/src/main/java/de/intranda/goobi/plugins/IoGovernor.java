@@ -0,0 +1,310 @@
+package de.intranda.goobi.plugins;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application wide limits for the I/O of all exports: the bandwidth of the copied, hashed and zipped data, the number of
+ * exports running at the same time and the number of files read at the same time. All limits are disabled by default.
+ * The bandwidth is limited with a token bucket that allows bursts of one second.
+ */
+public class IoGovernor {
+
+	private static final IoGovernor INSTANCE = new IoGovernor();
+
+	private final Object bucketLock = new Object();
+	private volatile long bytesPerSecond;
+	private double tokens;
+	private long lastRefill = System.nanoTime();
+	private final AtomicLong throttledNanos = new AtomicLong();
+
+	private final Limit exports = new Limit();
+	private final Limit openFiles = new Limit();
+
+	IoGovernor() {
+	}
+
+	public static IoGovernor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param bytesPerSecond the bandwidth of all exports together, 0 for no limit
+	 */
+	public void setBandwidth(long bytesPerSecond) {
+		synchronized (bucketLock) {
+			this.bytesPerSecond = Math.max(0, bytesPerSecond);
+			tokens = Math.min(tokens, this.bytesPerSecond);
+		}
+	}
+
+	public long getBandwidth() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @param maxExports the number of exports running at the same time, 0 for no limit
+	 */
+	public void setMaxExports(int maxExports) {
+		exports.setMax(maxExports);
+	}
+
+	/**
+	 * @param maxOpenFiles the number of files read at the same time by all exports, 0 for no limit
+	 */
+	public void setMaxOpenFiles(int maxOpenFiles) {
+		openFiles.setMax(maxOpenFiles);
+	}
+
+	/**
+	 * Wait until the bandwidth allows to process more data. The bytes are taken from the bucket immediately, a caller
+	 * exceeding the bucket waits until the bucket is refilled.
+	 * 
+	 * @param bytes the number of bytes read or written
+	 * @throws InterruptedIOException
+	 */
+	public void acquireBytes(long bytes) throws InterruptedIOException {
+		if (bytesPerSecond <= 0 || bytes <= 0) {
+			return;
+		}
+		long waitNanos;
+		synchronized (bucketLock) {
+			long rate = bytesPerSecond;
+			if (rate <= 0) {
+				return;
+			}
+			long now = System.nanoTime();
+			tokens = Math.min(rate, tokens + (now - lastRefill) * (double) rate / TimeUnit.SECONDS.toNanos(1));
+			lastRefill = now;
+			tokens -= bytes;
+			waitNanos = tokens < 0 ? (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+		}
+		if (waitNanos > 0) {
+			throttledNanos.addAndGet(waitNanos);
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the bandwidth limit");
+			}
+		}
+	}
+
+	/**
+	 * Wait until less than the maximum number of exports is running. Each call must be followed by
+	 * {@link #releaseExport()}.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void acquireExport() throws InterruptedException {
+		exports.acquire();
+	}
+
+	public void releaseExport() {
+		exports.release();
+	}
+
+	/**
+	 * Wait until less than the maximum number of files is read. Each call must be followed by {@link #closeFile()}.
+	 * 
+	 * @throws InterruptedIOException
+	 */
+	public void openFile() throws InterruptedIOException {
+		try {
+			openFiles.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the open file limit");
+		}
+	}
+
+	public void closeFile() {
+		openFiles.release();
+	}
+
+	/**
+	 * Open a file for reading within the limits of open files and bandwidth
+	 * 
+	 * @param file the file to read
+	 * @return the stream, closing it releases the open file
+	 * @throws IOException
+	 */
+	public InputStream newInputStream(Path file) throws IOException {
+		openFile();
+		try {
+			return new GovernedInputStream(Files.newInputStream(file));
+		} catch (IOException | RuntimeException e) {
+			closeFile();
+			throw e;
+		}
+	}
+
+	/**
+	 * Copy a file including its attributes within the limits of open files and bandwidth. An existing target is
+	 * replaced and not overwritten, as it might be a hard link to a master image or a file of the content store.
+	 * 
+	 * @param source the file to copy
+	 * @param target the destination file, an existing file is replaced
+	 * @throws IOException
+	 */
+	public void copy(Path source, Path target) throws IOException {
+		if (bytesPerSecond <= 0) {
+			openFile();
+			try {
+				Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			} finally {
+				closeFile();
+			}
+			return;
+		}
+		// the data is written under a temporary name next to the target and then moved over it
+		Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+		try {
+			// the stream holds the open file until it is closed
+			try (InputStream in = newInputStream(source);
+					OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW,
+							StandardOpenOption.WRITE)) {
+				byte[] buffer = new byte[ChecksumVerifier.BUFFER_SIZE];
+				int length;
+				while ((length = in.read(buffer)) != -1) {
+					out.write(buffer, 0, length);
+				}
+			}
+			copyAttributes(source, temp);
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Copy the attributes {@link StandardCopyOption#COPY_ATTRIBUTES} copies: the timestamps and on POSIX file systems
+	 * the permissions
+	 */
+	private static void copyAttributes(Path source, Path target) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+		Files.getFileAttributeView(target, BasicFileAttributeView.class)
+				.setTimes(attributes.lastModifiedTime(), attributes.lastAccessTime(), attributes.creationTime());
+		if (Files.getFileAttributeView(target, PosixFileAttributeView.class) != null) {
+			Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+		}
+	}
+
+	/**
+	 * @return the time all threads waited for the bandwidth limit in nanoseconds
+	 */
+	public long getThrottledNanos() {
+		return throttledNanos.get();
+	}
+
+	/**
+	 * @return the time all exports waited for the limit of running exports in nanoseconds
+	 */
+	public long getExportWaitNanos() {
+		return exports.getWaitNanos();
+	}
+
+	/**
+	 * @return the time all threads waited for the limit of open files in nanoseconds
+	 */
+	public long getOpenFileWaitNanos() {
+		return openFiles.getWaitNanos();
+	}
+
+	/**
+	 * Number of permits that can be changed while permits are in use
+	 */
+	static class Limit {
+		private int max;
+		private int used;
+		private long waitNanos;
+
+		synchronized void setMax(int max) {
+			this.max = Math.max(0, max);
+			notifyAll();
+		}
+
+		synchronized void acquire() throws InterruptedException {
+			if (max > 0 && used >= max) {
+				long start = System.nanoTime();
+				try {
+					while (max > 0 && used >= max) {
+						wait();
+					}
+				} finally {
+					waitNanos += System.nanoTime() - start;
+				}
+			}
+			used++;
+		}
+
+		synchronized void release() {
+			used--;
+			notifyAll();
+		}
+
+		synchronized int getUsed() {
+			return used;
+		}
+
+		synchronized long getWaitNanos() {
+			return waitNanos;
+		}
+	}
+
+	/**
+	 * Counts the read bytes against the bandwidth and releases the open file when it is closed
+	 */
+	private class GovernedInputStream extends FilterInputStream {
+		private boolean closed;
+
+		private GovernedInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				acquireBytes(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int length = super.read(b, off, len);
+			if (length > 0) {
+				acquireBytes(length);
+			}
+			return length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				super.close();
+			} finally {
+				closeFile();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.goobi.beans.Process;
+
+import de.sub.goobi.helper.exceptions.SwapException;
+import lombok.Getter;
+import ugh.dl.DigitalDocument;
+import ugh.dl.Fileformat;
+import ugh.dl.Prefs;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+
+/**
+ * The metadata of a process during a single export. The metadata file is parsed at most once and read from disk at
+ * most once, all parts of the export share the parsed {@link Fileformat} and the raw file content.
+ */
+public class MetadataSession {
+
+	@Getter
+	private final Process process;
+	@Getter
+	private final Prefs preferences;
+	private Fileformat fileformat;
+	private byte[] content;
+
+	/**
+	 * @param process the exported process
+	 * @param preferences the parsed ruleset of the process
+	 */
+	public MetadataSession(Process process, Prefs preferences) {
+		this.process = process;
+		this.preferences = preferences;
+	}
+
+	/**
+	 * Get the parsed metadata file. The METS export adds the content files to the digital document, so the fileformat
+	 * must only be used by one thread at a time.
+	 * 
+	 * @return the parsed metadata file
+	 * @throws ReadException
+	 * @throws IOException
+	 * @throws SwapException
+	 * @throws PreferencesException
+	 */
+	public synchronized Fileformat getFileformat() throws ReadException, IOException, SwapException, PreferencesException {
+		if (fileformat == null) {
+			fileformat = process.readMetadataFile();
+		}
+		return fileformat;
+	}
+
+	/**
+	 * @return the digital document of the parsed metadata file
+	 * @throws ReadException
+	 * @throws IOException
+	 * @throws SwapException
+	 * @throws PreferencesException
+	 */
+	public DigitalDocument getDigitalDocument() throws ReadException, IOException, SwapException, PreferencesException {
+		return getFileformat().getDigitalDocument();
+	}
+
+	/**
+	 * @return the unparsed content of the metadata file, e.g. for XSLT transformations
+	 * @throws IOException
+	 * @throws SwapException
+	 */
+	public synchronized byte[] getContent() throws IOException, SwapException {
+		if (content == null) {
+			content = Files.readAllBytes(Paths.get(process.getMetadataFilePath()));
+		}
+		return content;
+	}
+
+}
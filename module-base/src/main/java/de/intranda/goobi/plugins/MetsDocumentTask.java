@@ -0,0 +1,139 @@
+package de.intranda.goobi.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.jdom2.Document;
+import org.jdom2.JDOMException;
+import org.jdom2.transform.JDOMSource;
+
+import lombok.Setter;
+
+/**
+ * Applies all configured modifications to the exported METS file and transforms the result with an XSLT stylesheet.
+ * The transformation reads the rewritten document from memory instead of the file, so it never sees the METS file
+ * before the rewrite. The task doesn't depend on the exported folders and runs while they are copied.
+ */
+public class MetsDocumentTask implements Callable<Void> {
+
+	private final Path metsFile;
+	private final ExportStatistics statistics;
+
+	/** rewrite the file in a single streaming pass with constant memory instead of building a document tree */
+	@Setter
+	private boolean streaming;
+	/** generate UUIDs for each mets:fileGrp and mets:file */
+	@Setter
+	private boolean replaceIds;
+	/** file group name (@USE) -> file name without extension -> checksum, null if checksums are not added */
+	@Setter
+	private Map<String, Map<String, String>> checksumsPerFileGroup;
+	@Setter
+	private String checksumType;
+	/** replace this value in each mets:FLocat/@xlink:href, null to keep the references */
+	@Setter
+	private String hrefSearchValue;
+	@Setter
+	private String hrefReplacement;
+	/** the stylesheet of the transformation, null if the METS file is not transformed */
+	@Setter
+	private Path transformationXsl;
+	@Setter
+	private Path transformationResult;
+	/** passed to the stylesheet as parameter processTitle */
+	@Setter
+	private String processTitle;
+
+	/**
+	 * @param metsFile the exported METS file
+	 * @param statistics records the duration of the rewrite and the transformation
+	 */
+	public MetsDocumentTask(Path metsFile, ExportStatistics statistics) {
+		this.metsFile = metsFile;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public Void call() throws IOException, JDOMException, XMLStreamException, TransformerException {
+		ExportStatistics.Timer rewrite = statistics.start(ExportStatistics.METS_REWRITE);
+		Source mets = rewrite();
+		rewrite.stop(Files.size(metsFile), 1);
+		if (transformationXsl != null) {
+			ExportStatistics.Timer transformation = statistics.start(ExportStatistics.METS_TRANSFORMATION);
+			Transformer transformer = XsltTemplatesCache.getInstance().getTemplates(transformationXsl).newTransformer();
+			transformer.setParameter("processTitle", processTitle);
+			transformer.transform(mets, new StreamResult(transformationResult.toFile()));
+			transformation.stop(Files.size(transformationResult), 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Apply all configured modifications to the exported METS file
+	 *
+	 * @return the rewritten METS file as in memory source for the transformation, if one is configured
+	 * @throws IOException
+	 * @throws JDOMException
+	 * @throws XMLStreamException
+	 */
+	private Source rewrite() throws IOException, JDOMException, XMLStreamException {
+		String systemId = metsFile.toUri().toString();
+		if (streaming) {
+			StreamingMetsRewriter rewriter = new StreamingMetsRewriter();
+			rewriter.setReplaceIds(replaceIds);
+			if (checksumsPerFileGroup != null) {
+				rewriter.setChecksumsPerFileGroup(checksumsPerFileGroup);
+				rewriter.setChecksumType(checksumType);
+			}
+			if (hrefSearchValue != null) {
+				rewriter.setHrefSearchValue(hrefSearchValue);
+				rewriter.setHrefReplacement(hrefReplacement);
+			}
+			if (transformationXsl == null || rewriter.isEmpty()) {
+				rewriter.rewrite(metsFile);
+				return new StreamSource(metsFile.toFile());
+			}
+			// keep the result for the transformation instead of reading the file again
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			try (InputStream in = Files.newInputStream(metsFile)) {
+				rewriter.rewrite(in, buffer);
+			}
+			byte[] content = buffer.toByteArray();
+			Files.write(metsFile, content);
+			return new StreamSource(new ByteArrayInputStream(content), systemId);
+		}
+		// collect all modifications of the exported file, so that it is parsed and written only once
+		MetsRewritePipeline pipeline = new MetsRewritePipeline();
+		if (replaceIds) {
+			pipeline.addStep(new UuidRewriteStep());
+		}
+		if (checksumsPerFileGroup != null) {
+			pipeline.addStep(new ChecksumRewriteStep(checksumsPerFileGroup, checksumType));
+		}
+		if (hrefSearchValue != null) {
+			pipeline.addStep(new HrefReplacementStep(hrefSearchValue, hrefReplacement));
+		}
+		Document document = pipeline.run(metsFile);
+		if (document == null) {
+			return new StreamSource(metsFile.toFile());
+		}
+		// the transformation reads the modified document tree directly
+		JDOMSource source = new JDOMSource(document);
+		source.setSystemId(systemId);
+		return source;
+	}
+
+}
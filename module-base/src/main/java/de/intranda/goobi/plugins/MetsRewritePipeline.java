@@ -0,0 +1,67 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jdom2.Document;
+import org.jdom2.JDOMException;
+import org.jdom2.Namespace;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * Collects all configured modifications of the exported METS file and applies them in a single read/write cycle,
+ * regardless of how many of them are enabled.
+ */
+public class MetsRewritePipeline {
+
+	static final Namespace mets = Namespace.getNamespace("mets", "http://www.loc.gov/METS/");
+	static final Namespace xlink = Namespace.getNamespace("xlink", "http://www.w3.org/1999/xlink");
+
+	private final List<MetsRewriteStep> steps = new ArrayList<>();
+
+	/**
+	 * Register another step, steps are executed in the order they were added
+	 * 
+	 * @param step the step to add
+	 * @return this pipeline
+	 */
+	public MetsRewritePipeline addStep(MetsRewriteStep step) {
+		steps.add(step);
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return steps.isEmpty();
+	}
+
+	/**
+	 * Parse the METS file once, apply all registered steps and write the result back to the same file. Nothing is
+	 * done if no step was registered.
+	 * 
+	 * @param metsFile the exported METS file
+	 * @return the modified document or null, if no step was registered
+	 * @throws IOException
+	 * @throws JDOMException
+	 */
+	public Document run(Path metsFile) throws IOException, JDOMException {
+		if (steps.isEmpty()) {
+			return null;
+		}
+		Document document = new SAXBuilder().build(metsFile.toFile());
+		for (MetsRewriteStep step : steps) {
+			step.apply(document.getRootElement());
+		}
+		XMLOutputter xmlOutput = new XMLOutputter(Format.getPrettyFormat());
+		try (OutputStream out = Files.newOutputStream(metsFile)) {
+			xmlOutput.output(document, out);
+		}
+		return document;
+	}
+
+}
@@ -0,0 +1,19 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Element;
+
+/**
+ * A single modification of the exported METS file. Steps are registered in a {@link MetsRewritePipeline} and are all
+ * applied to the same parsed document, so the file is read and written only once.
+ */
+@FunctionalInterface
+public interface MetsRewriteStep {
+
+	/**
+	 * Apply the modification to the METS document
+	 * 
+	 * @param root the mets:mets root element of the exported file
+	 */
+	void apply(Element root);
+
+}
@@ -0,0 +1,80 @@
+package de.intranda.goobi.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Writes the files of an export package into an archive. Implementations may process the files in the background,
+ * the entries are written in the order they were added.
+ */
+public interface PackageArchiveWriter extends Closeable {
+
+	/**
+	 * Add an entry for an empty folder
+	 * 
+	 * @param name the name of the folder within the archive
+	 * @throws IOException
+	 */
+	void addDirectory(String name) throws IOException;
+
+	/**
+	 * Add a file to the archive
+	 * 
+	 * @param name the name of the file within the archive
+	 * @param source the file to add
+	 * @param checksumType the checksum to calculate while reading the file or null
+	 * @param checksumConsumer gets the calculated checksum, may be called from another thread
+	 * @throws IOException
+	 */
+	void addFile(String name, Path source, String checksumType, Consumer<String> checksumConsumer) throws IOException;
+
+	/**
+	 * Add a file from memory
+	 * 
+	 * @param name the name of the file within the archive
+	 * @param content the content of the file
+	 * @throws IOException
+	 */
+	void addFile(String name, byte[] content) throws IOException;
+
+	/**
+	 * Wait until all files added so far are written, afterwards all checksums have been passed to their consumers
+	 * 
+	 * @throws IOException
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Add all files and empty folders of a folder recursively
+	 * 
+	 * @param folder the folder to add
+	 * @param prefix the name of the folder within the archive
+	 * @throws IOException
+	 */
+	default void addFolder(Path folder, String prefix) throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try (Stream<Path> stream = Files.walk(folder)) {
+			stream.forEach(paths::add);
+		}
+		for (Path path : paths) {
+			String relativeName = HashingCopier.getRelativeName(folder, path);
+			String name = relativeName.isEmpty() ? prefix : prefix + "/" + relativeName;
+			if (!Files.isDirectory(path)) {
+				addFile(name, path, null, null);
+			} else {
+				try (Stream<Path> children = Files.list(path)) {
+					if (!children.findAny().isPresent()) {
+						addDirectory(name);
+					}
+				}
+			}
+		}
+	}
+
+}
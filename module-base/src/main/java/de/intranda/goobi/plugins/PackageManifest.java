@@ -0,0 +1,174 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import lombok.Getter;
+
+/**
+ * List of all files of an exported package with size, modification date and checksum of their source. The manifest
+ * is stored in the destination folder, so that a later export into the same folder only needs to copy the files that
+ * have changed since.
+ */
+public class PackageManifest {
+
+	public static final String FILE_NAME = ".package-manifest";
+
+	private static final String HEADER = "# ";
+	private static final String UNKNOWN_DIGEST = "-";
+
+	@Getter
+	private final String checksumType;
+	private final Map<String, Record> records = new TreeMap<>();
+
+	/**
+	 * @param checksumType the checksum type of the recorded digests
+	 */
+	public PackageManifest(String checksumType) {
+		this.checksumType = checksumType;
+	}
+
+	/**
+	 * Read the manifest of a previous export. Digests of a different checksum type are not used.
+	 * 
+	 * @param file the manifest file
+	 * @param checksumType the checksum type of the current export
+	 * @return the manifest, empty if the file does not exist or was written with a different checksum type
+	 * @throws IOException
+	 */
+	public static PackageManifest read(Path file, String checksumType) throws IOException {
+		PackageManifest manifest = new PackageManifest(checksumType);
+		if (!Files.isRegularFile(file)) {
+			return manifest;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			if (line == null || !line.equals(HEADER + checksumType)) {
+				return manifest;
+			}
+			while ((line = reader.readLine()) != null) {
+				// digest, size, modification time and name, separated by tabs
+				String[] parts = line.split("\t", 4);
+				if (parts.length == 4) {
+					String digest = UNKNOWN_DIGEST.equals(parts[0]) ? null : parts[0];
+					manifest.records.put(parts[3],
+							new Record(Long.parseLong(parts[1]), Long.parseLong(parts[2]), digest));
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Write the manifest
+	 * 
+	 * @param file the manifest file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write(HEADER + checksumType);
+			writer.newLine();
+			for (Entry<String, Record> entry : records.entrySet()) {
+				Record record = entry.getValue();
+				writer.write((record.getDigest() == null ? UNKNOWN_DIGEST : record.getDigest()) + "\t" + record.getSize()
+						+ "\t" + record.getLastModified() + "\t" + entry.getKey());
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Record a file with size and modification date of its source
+	 * 
+	 * @param name the path relative to the package folder
+	 * @param source the exported file
+	 * @param digest the checksum of the file or null, if it is not known
+	 * @throws IOException
+	 */
+	public void add(String name, Path source, String digest) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+		records.put(name, new Record(attributes.size(), attributes.lastModifiedTime().toMillis(), digest));
+	}
+
+	public Record get(String name) {
+		return records.get(name);
+	}
+
+	void put(String name, Record record) {
+		records.put(name, record);
+	}
+
+	/**
+	 * Add all records of another manifest, existing records with the same name are replaced
+	 * 
+	 * @param other the manifest to add
+	 */
+	public void addAll(PackageManifest other) {
+		records.putAll(other.records);
+	}
+
+	Set<String> getNames() {
+		return records.keySet();
+	}
+
+	public boolean isEmpty() {
+		return records.isEmpty();
+	}
+
+	/**
+	 * Check if a file was exported before and neither the source nor the exported copy have changed since
+	 * 
+	 * @param name the path relative to the package folder
+	 * @param source the file to export
+	 * @param target the exported file
+	 * @return true if the file does not need to be copied again
+	 * @throws IOException
+	 */
+	public boolean isUnchanged(String name, Path source, Path target) throws IOException {
+		Record record = records.get(name);
+		if (record == null || !Files.isRegularFile(target)) {
+			return false;
+		}
+		BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+		return attributes.size() == record.getSize() && attributes.lastModifiedTime().toMillis() == record.getLastModified()
+				&& Files.size(target) == record.getSize();
+	}
+
+	/**
+	 * @param names the files of the current export
+	 * @return all recorded files that are not part of the current export anymore
+	 */
+	public List<String> getRemovedNames(Set<String> names) {
+		List<String> removed = new ArrayList<>(records.keySet());
+		removed.removeAll(names);
+		return removed;
+	}
+
+	public static class Record {
+		@Getter
+		private final long size;
+		@Getter
+		private final long lastModified;
+		@Getter
+		private final String digest;
+
+		public Record(long size, long lastModified, String digest) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.digest = digest;
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Executes an {@link ExportPlan} on a bounded number of threads. Files from all folders of the plan are copied
+ * concurrently, failures don't stop the other copies but are collected per folder.
+ */
+@Log4j2
+public class ParallelExporter {
+
+	private final int threads;
+	private final ExecutorService sharedExecutor;
+	private final ExportStatistics statistics;
+	@Getter
+	private final FileTransfer fileTransfer = new FileTransfer();
+	private BiConsumer<ExportPlan.Entry, String> listener;
+	private ExportProgress progress;
+	private ContentStore contentStore;
+
+	/**
+	 * @param threads the number of files to copy in parallel, 1 copies all files on the calling thread
+	 */
+	public ParallelExporter(int threads) {
+		this(threads, null);
+	}
+
+	/**
+	 * @param threads the number of files to copy in parallel, 1 copies all files on the calling thread
+	 * @param statistics records files and bytes copied per folder, can be null
+	 */
+	public ParallelExporter(int threads, ExportStatistics statistics) {
+		this.threads = Math.max(1, threads);
+		this.sharedExecutor = null;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param sharedExecutor the pool to copy the files on, it is shared with other exports and not shut down
+	 * @param statistics records files and bytes copied per folder, can be null
+	 */
+	public ParallelExporter(ExecutorService sharedExecutor, ExportStatistics statistics) {
+		this.threads = 0;
+		this.sharedExecutor = sharedExecutor;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param listener called after each exported file with the calculated checksum or null, may be called from several
+	 *            threads at the same time
+	 */
+	public void setListener(BiConsumer<ExportPlan.Entry, String> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param progress receives the size of each exported file, can be null
+	 */
+	public void setProgress(ExportProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * @param contentStore the store files with a known checksum are linked from, can be null
+	 */
+	public void setContentStore(ContentStore contentStore) {
+		this.contentStore = contentStore;
+	}
+
+	/**
+	 * Copy all entries of the plan
+	 * 
+	 * @param plan the files to export
+	 * @return the errors and calculated checksums per folder
+	 * @throws InterruptedException
+	 */
+	public Result execute(ExportPlan plan) throws InterruptedException {
+		Result result = new Result();
+		if (sharedExecutor != null) {
+			return execute(plan, sharedExecutor, result);
+		}
+		if (threads == 1 || plan.getEntries().size() < 2) {
+			for (ExportPlan.Entry entry : plan.getEntries()) {
+				export(entry, result);
+			}
+			return result;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (ExportPlan.Entry entry : plan.getEntries()) {
+				executor.execute(() -> export(entry, result));
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.debug("Waiting for export of {} files", plan.getEntries().size());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	private Result execute(ExportPlan plan, ExecutorService executor, Result result) throws InterruptedException {
+		List<Future<?>> futures = new ArrayList<>();
+		try {
+			for (ExportPlan.Entry entry : plan.getEntries()) {
+				futures.add(executor.submit(() -> export(entry, result)));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					// export() collects its own errors, so this is not expected
+					log.error("Error exporting files", e.getCause());
+				}
+			}
+		} finally {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return result;
+	}
+
+	private void export(ExportPlan.Entry entry, Result result) {
+		long start = System.nanoTime();
+		try {
+			String checksum = null;
+			if (entry.isDirectory()) {
+				Files.createDirectories(entry.getTarget());
+				return;
+			} else if (contentStore != null && entry.getDigest() != null) {
+				// the source is only read, if the content is not in the store yet, the package links to the store
+				Path stored = contentStore.add(entry.getSource(), entry.getDigest());
+				fileTransfer.transfer(stored, entry.getTarget(), TransferStrategy.HARDLINK);
+				if (entry.getChecksumType() != null) {
+					// verified when the file was added to the store
+					checksum = entry.getDigest();
+					result.addChecksum(entry.getLabel(), entry.getRelativeName(), checksum);
+				}
+			} else if (entry.getTransferStrategy() != null && entry.getTransferStrategy() != TransferStrategy.COPY) {
+				fileTransfer.transfer(entry.getSource(), entry.getTarget(), entry.getTransferStrategy());
+				if (entry.getChecksumType() != null) {
+					// the data did not pass the JVM, so the checksum is calculated from the transferred file
+					checksum = ChecksumVerifier.hash(entry.getTarget(),
+							ChecksumVerifier.getDigestAlgorithm(entry.getChecksumType()));
+					result.addChecksum(entry.getLabel(), entry.getRelativeName(), checksum);
+				}
+			} else if (entry.getChecksumType() != null) {
+				checksum = new HashingCopier(entry.getChecksumType()).copyFile(entry.getSource(), entry.getTarget());
+				result.addChecksum(entry.getLabel(), entry.getRelativeName(), checksum);
+			} else {
+				Files.createDirectories(entry.getTarget().getParent());
+				IoGovernor.getInstance().copy(entry.getSource(), entry.getTarget());
+			}
+			if (statistics != null || progress != null) {
+				long size = Files.size(entry.getTarget());
+				if (statistics != null) {
+					statistics.recordDetail(ExportStatistics.COPY, entry.getLabel(), System.nanoTime() - start, size, 1);
+				}
+				if (progress != null) {
+					progress.add(size);
+				}
+			}
+			if (listener != null) {
+				listener.accept(entry, checksum);
+			}
+		} catch (IOException | RuntimeException e) {
+			log.error("Error exporting {}", entry.getSource(), e);
+			result.addError(entry.getLabel(), entry.getRelativeName() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Errors and checksums of an executed plan, grouped by the folder labels of the plan
+	 */
+	public static class Result {
+		@Getter
+		private final Map<String, List<String>> errors = new ConcurrentHashMap<>();
+		private final Map<String, Map<String, String>> checksums = new ConcurrentHashMap<>();
+
+		void addError(String label, String message) {
+			errors.computeIfAbsent(label, k -> Collections.synchronizedList(new ArrayList<>())).add(message);
+		}
+
+		void addChecksum(String label, String relativeName, String checksum) {
+			Map<String, String> folderChecksums = checksums.computeIfAbsent(label,
+					k -> Collections.synchronizedMap(new TreeMap<>()));
+			folderChecksums.put(relativeName, checksum);
+		}
+
+		public boolean hasErrors() {
+			return !errors.isEmpty();
+		}
+
+		/**
+		 * @param label the folder label
+		 * @return the checksums calculated during the copy, an empty map if the folder was copied without checksums
+		 */
+		public Map<String, String> getChecksums(String label) {
+			Map<String, String> folderChecksums = checksums.get(label);
+			if (folderChecksums == null) {
+				return new TreeMap<>();
+			}
+			synchronized (folderChecksums) {
+				return new TreeMap<>(folderChecksums);
+			}
+		}
+	}
+
+}
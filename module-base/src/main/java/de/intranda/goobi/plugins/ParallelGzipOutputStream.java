@@ -0,0 +1,125 @@
+package de.intranda.goobi.plugins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses a stream with gzip on several threads. The data is split into blocks, each block is compressed into a
+ * separate gzip member and the members are written in order. Concatenated members are a valid gzip file, which can be
+ * read by gzip, tar and {@link java.util.zip.GZIPInputStream}.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	static final int BLOCK_SIZE = 1024 * 1024;
+
+	private final OutputStream out;
+	private final int level;
+	private final int maxPending;
+	private final ExecutorService executor;
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int count;
+
+	/**
+	 * @param out the stream to write the compressed data to
+	 * @param level the compression level from 0 to 9, -1 uses the default
+	 * @param threads the number of blocks to compress at the same time
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int level, int threads) {
+		this.out = out;
+		this.level = level;
+		this.maxPending = Math.max(1, threads) * 2;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		block[count++] = (byte) b;
+		if (count == block.length) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int length = Math.min(len, block.length - count);
+			System.arraycopy(b, off, block, count, length);
+			count += length;
+			off += length;
+			len -= length;
+			if (count == block.length) {
+				submitBlock();
+			}
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		byte[] data = block;
+		int length = count;
+		pending.add(executor.submit(() -> compress(data, length)));
+		block = new byte[BLOCK_SIZE];
+		count = 0;
+		// limit the memory used by blocks waiting to be written
+		while (pending.size() > maxPending) {
+			writeNext();
+		}
+	}
+
+	private byte[] compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 2 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, BLOCK_SIZE) {
+			{
+				def.setLevel(level);
+			}
+		}) {
+			gzip.write(data, 0, length);
+		}
+		return buffer.toByteArray();
+	}
+
+	private void writeNext() throws IOException {
+		try {
+			out.write(pending.poll().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Compress and write all data written so far. Every flush ends the current block, so it should be called rarely.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (count > 0) {
+			submitBlock();
+		}
+		while (!pending.isEmpty()) {
+			writeNext();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+
+}
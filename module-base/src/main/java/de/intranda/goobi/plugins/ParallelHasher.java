@@ -0,0 +1,119 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+
+/**
+ * Calculates the checksums of all files of a folder in parallel. Each file is read only once, even if several
+ * checksum types are requested.
+ */
+public class ParallelHasher {
+
+	@Getter
+	private final List<String> checksumTypes;
+	private final int threads;
+	@Getter
+	private long bytes;
+
+	/**
+	 * @param checksumTypes the checksum types to calculate, e.g. SHA-1 and MD5
+	 * @param threads the maximum number of files to hash in parallel
+	 */
+	public ParallelHasher(List<String> checksumTypes, int threads) {
+		this.checksumTypes = new ArrayList<>(checksumTypes);
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Hash all regular files of the folder, sub folders are ignored
+	 * 
+	 * @param folder the folder to hash
+	 * @return map of checksum type to a map of file name to checksum, sorted by file name
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Map<String, Map<String, String>> hash(Path folder) throws IOException, InterruptedException {
+		List<Path> files;
+		try (Stream<Path> children = Files.list(folder)) {
+			files = children.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+		Map<String, Map<String, String>> result = new LinkedHashMap<>();
+		for (String checksumType : checksumTypes) {
+			result.put(checksumType, new TreeMap<>());
+		}
+		if (files.isEmpty()) {
+			return result;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+		try {
+			Map<String, Future<String[]>> digests = new LinkedHashMap<>();
+			for (Path file : files) {
+				digests.put(file.getFileName().toString(), executor.submit(() -> hashFile(file)));
+			}
+			for (Map.Entry<String, Future<String[]>> digest : digests.entrySet()) {
+				String[] values = digest.getValue().get();
+				for (int i = 0; i < checksumTypes.size(); i++) {
+					result.get(checksumTypes.get(i)).put(digest.getKey(), values[i]);
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	private String[] hashFile(Path file) throws IOException {
+		MessageDigest[] digests = new MessageDigest[checksumTypes.size()];
+		for (int i = 0; i < digests.length; i++) {
+			digests[i] = ChecksumVerifier.getMessageDigest(ChecksumVerifier.getDigestAlgorithm(checksumTypes.get(i)));
+		}
+		long size = 0;
+		byte[] buffer = new byte[ChecksumVerifier.BUFFER_SIZE];
+		try (InputStream in = IoGovernor.getInstance().newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				for (MessageDigest digest : digests) {
+					digest.update(buffer, 0, read);
+				}
+				size += read;
+			}
+		}
+		addBytes(size);
+		String[] result = new String[digests.length];
+		for (int i = 0; i < digests.length; i++) {
+			result[i] = ChecksumVerifier.toHex(digests[i].digest());
+		}
+		return result;
+	}
+
+	private synchronized void addBytes(long size) {
+		bytes += size;
+	}
+
+	/**
+	 * @param checksumType the checksum type, e.g. SHA-256
+	 * @return the usual extension of checksum files of this type, e.g. .sha256
+	 */
+	public static String getFileExtension(String checksumType) {
+		return "." + ChecksumVerifier.getDigestAlgorithm(checksumType).replace("-", "").toLowerCase();
+	}
+
+}
@@ -0,0 +1,346 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Writes a zip archive with several threads. Compressed entries are read once and deflated independently on a fork join
+ * pool into a memory buffer, or into a temporary spill file for large entries. Stored files are copied directly into
+ * the archive when it is their turn, as their data would not get smaller in a buffer. The entries are written in the
+ * order they were added.
+ */
+@Log4j2
+public class ParallelZipWriter implements PackageArchiveWriter {
+
+	/** prepared entries up to this size are kept in memory */
+	static final int MEMORY_LIMIT = 8 * 1024 * 1024;
+
+	private final ZipRecordWriter zip;
+	private final Path spillDirectory;
+	private final ZipCompressionPolicy compressionPolicy;
+	private final ForkJoinPool pool;
+	private final int maxPendingEntries;
+	private final Deque<Future<PreparedEntry>> pending = new ArrayDeque<>();
+	private final byte[] copyBuffer = new byte[ZipPackageWriter.BUFFER_SIZE];
+
+	/**
+	 * @param zipFile the archive to create, an existing file gets replaced
+	 * @param compressionPolicy decides which entries are compressed
+	 * @param threads the number of entries to compress in parallel
+	 * @throws IOException
+	 */
+	public ParallelZipWriter(Path zipFile, ZipCompressionPolicy compressionPolicy, int threads) throws IOException {
+		this.compressionPolicy = compressionPolicy;
+		this.spillDirectory = zipFile.toAbsolutePath().getParent();
+		this.pool = new ForkJoinPool(Math.max(1, threads));
+		// limits the memory used by finished entries that wait for their predecessors
+		this.maxPendingEntries = Math.max(1, threads) * 2;
+		this.zip = new ZipRecordWriter(zipFile);
+	}
+
+	@Override
+	public void addDirectory(String name) throws IOException {
+		PreparedEntry entry = new PreparedEntry(name.endsWith("/") ? name : name + "/", System.currentTimeMillis());
+		entry.method = ZipRecordWriter.METHOD_STORED;
+		enqueue(CompletableFuture.completedFuture(entry));
+	}
+
+	@Override
+	public void addFile(String name, Path source, String checksumType, Consumer<String> checksumConsumer)
+			throws IOException {
+		long time = Files.getLastModifiedTime(source).toMillis();
+		if (compressionPolicy.isStored(name)) {
+			PreparedEntry entry = new PreparedEntry(name, time);
+			entry.method = ZipRecordWriter.METHOD_STORED;
+			entry.source = source;
+			entry.checksumType = checksumType;
+			entry.checksumConsumer = checksumConsumer;
+			enqueue(CompletableFuture.completedFuture(entry));
+			return;
+		}
+		enqueue(pool.submit(() -> {
+			PreparedEntry entry = new PreparedEntry(name, time);
+			MessageDigest digest = checksumType == null ? null
+					: ChecksumVerifier.getMessageDigest(ChecksumVerifier.getDigestAlgorithm(checksumType));
+			try (InputStream in = IoGovernor.getInstance().newInputStream(source)) {
+				deflate(in, entry, digest);
+			}
+			if (digest != null && checksumConsumer != null) {
+				checksumConsumer.accept(ChecksumVerifier.toHex(digest.digest()));
+			}
+			return entry;
+		}));
+	}
+
+	@Override
+	public void addFile(String name, byte[] content) throws IOException {
+		boolean stored = compressionPolicy.isStored(name);
+		enqueue(pool.submit(() -> {
+			PreparedEntry entry = new PreparedEntry(name, System.currentTimeMillis());
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			entry.crc = crc.getValue();
+			entry.size = content.length;
+			if (stored) {
+				entry.method = ZipRecordWriter.METHOD_STORED;
+				entry.data = content;
+				entry.compressedSize = content.length;
+			} else {
+				deflate(new ByteArrayInputStream(content), entry, null);
+			}
+			return entry;
+		}));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		while (!pending.isEmpty()) {
+			writeNext();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			zip.close();
+			pool.shutdownNow();
+			for (Future<PreparedEntry> future : pending) {
+				future.cancel(true);
+				if (future.isDone() && !future.isCancelled()) {
+					try {
+						future.get().deleteSpillFile();
+					} catch (InterruptedException | ExecutionException e) {
+						log.debug(e);
+					}
+				}
+			}
+			pending.clear();
+		}
+	}
+
+	private void enqueue(Future<PreparedEntry> future) throws IOException {
+		pending.add(future);
+		while (pending.size() > maxPendingEntries) {
+			writeNext();
+		}
+	}
+
+	/**
+	 * Wait for the oldest pending entry and append it to the archive
+	 */
+	private void writeNext() throws IOException {
+		PreparedEntry entry;
+		try {
+			entry = pending.peek().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		pending.poll();
+		if (entry.source != null) {
+			writeStored(entry);
+			return;
+		}
+		try {
+			zip.writeLocalHeader(entry);
+			if (entry.data != null) {
+				zip.write(entry.data, 0, (int) entry.compressedSize);
+			} else if (entry.spillFile != null) {
+				try (InputStream in = IoGovernor.getInstance().newInputStream(entry.spillFile)) {
+					int length;
+					long remaining = entry.compressedSize;
+					while (remaining > 0 && (length = in.read(copyBuffer, 0, (int) Math.min(copyBuffer.length, remaining))) != -1) {
+						zip.write(copyBuffer, 0, length);
+						remaining -= length;
+					}
+					if (remaining > 0) {
+						throw new IOException("The spill file of " + entry.name + " is incomplete");
+					}
+				}
+			}
+		} finally {
+			entry.deleteSpillFile();
+		}
+		entry.data = null;
+	}
+
+	/**
+	 * Copy a stored file into the archive, calculate crc and checksum on the way and write them into the local header
+	 * afterwards
+	 */
+	private void writeStored(PreparedEntry entry) throws IOException {
+		MessageDigest digest = entry.checksumType == null ? null
+				: ChecksumVerifier.getMessageDigest(ChecksumVerifier.getDigestAlgorithm(entry.checksumType));
+		long expectedSize = Files.size(entry.source);
+		entry.size = expectedSize;
+		entry.compressedSize = expectedSize;
+		zip.writeLocalHeader(entry);
+		CRC32 crc = new CRC32();
+		long size = 0;
+		try (InputStream in = IoGovernor.getInstance().newInputStream(entry.source)) {
+			int length;
+			while ((length = in.read(copyBuffer)) != -1) {
+				crc.update(copyBuffer, 0, length);
+				if (digest != null) {
+					digest.update(copyBuffer, 0, length);
+				}
+				zip.write(copyBuffer, 0, length);
+				size += length;
+			}
+		}
+		if (size > expectedSize) {
+			throw new IOException("File changed while writing the archive: " + entry.name);
+		}
+		entry.crc = crc.getValue();
+		entry.size = size;
+		entry.compressedSize = size;
+		zip.updateLocalHeader(entry);
+		if (digest != null && entry.checksumConsumer != null) {
+			entry.checksumConsumer.accept(ChecksumVerifier.toHex(digest.digest()));
+		}
+	}
+
+	/**
+	 * Read the input once, calculate crc, size and checksum and keep the deflated data in memory or in a spill file
+	 */
+	private void deflate(InputStream in, PreparedEntry entry, MessageDigest digest) throws IOException {
+		entry.method = ZipRecordWriter.METHOD_DEFLATED;
+		SpillBuffer spill = new SpillBuffer(spillDirectory);
+		Deflater deflater = new Deflater(compressionPolicy.getLevel(), true);
+		try {
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[64 * 1024];
+			int length;
+			long size = 0;
+			while ((length = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, length);
+				if (digest != null) {
+					digest.update(buffer, 0, length);
+				}
+				deflater.setInput(buffer, 0, length);
+				while (!deflater.needsInput()) {
+					spill.drain(deflater);
+				}
+				size += length;
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				spill.drain(deflater);
+			}
+			spill.close();
+			entry.crc = crc.getValue();
+			entry.size = size;
+			entry.compressedSize = spill.size;
+			entry.data = spill.getBytes();
+			entry.spillFile = spill.file;
+		} catch (IOException | RuntimeException e) {
+			spill.close();
+			if (spill.file != null) {
+				Files.deleteIfExists(spill.file);
+			}
+			throw e;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * An entry that is ready to be written
+	 */
+	private static class PreparedEntry extends ZipRecordWriter.Entry {
+		/** stored or compressed data kept in memory */
+		private byte[] data;
+		/** compressed data written to a temporary file */
+		private Path spillFile;
+		/** a stored file that is copied when the entry is written */
+		private Path source;
+		private String checksumType;
+		private Consumer<String> checksumConsumer;
+
+		private PreparedEntry(String name, long time) {
+			super(name, time);
+		}
+
+		private void deleteSpillFile() {
+			if (spillFile != null) {
+				try {
+					Files.deleteIfExists(spillFile);
+				} catch (IOException e) {
+					log.error(e);
+				}
+				spillFile = null;
+			}
+		}
+	}
+
+	/**
+	 * Collects the data of an entry in memory and moves it to a temporary file once it gets too large
+	 */
+	private static class SpillBuffer {
+		private final Path directory;
+		private final byte[] buffer = new byte[64 * 1024];
+		private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+		private OutputStream fileOut;
+		private Path file;
+		private long size;
+
+		private SpillBuffer(Path directory) {
+			this.directory = directory;
+		}
+
+		private void drain(Deflater deflater) throws IOException {
+			write(buffer, 0, deflater.deflate(buffer));
+		}
+
+		private void write(byte[] bytes, int start, int length) throws IOException {
+			if (length == 0) {
+				return;
+			}
+			if (fileOut == null && memory.size() + length > MEMORY_LIMIT) {
+				file = Files.createTempFile(directory, ".zip-", ".spill");
+				fileOut = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+				memory.writeTo(fileOut);
+				memory = null;
+			}
+			if (fileOut != null) {
+				fileOut.write(bytes, start, length);
+			} else {
+				memory.write(bytes, start, length);
+			}
+			size += length;
+		}
+
+		private byte[] getBytes() {
+			return memory == null ? null : memory.toByteArray();
+		}
+
+		private void close() throws IOException {
+			if (fileOut != null) {
+				fileOut.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.sub.goobi.export.download.ExportMets;
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.helper.exceptions.SwapException;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.exceptions.TypeNotAllowedForParentException;
+import ugh.exceptions.WriteException;
+
+/**
+ * METS export that uses the already parsed metadata of a {@link MetadataSession} instead of reading the metadata file
+ * again.
+ */
+class SessionExportMets extends ExportMets {
+
+	/**
+	 * Write the METS file of the session's process into the destination folder
+	 * 
+	 * @param session the metadata of the process
+	 * @param destination the destination folder
+	 * @return true if the METS file was written
+	 * @throws PreferencesException
+	 * @throws WriteException
+	 * @throws ReadException
+	 * @throws TypeNotAllowedForParentException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws SwapException
+	 * @throws DAOException
+	 */
+	public boolean startExport(MetadataSession session, Path destination)
+			throws PreferencesException, WriteException, ReadException, TypeNotAllowedForParentException, IOException,
+			InterruptedException, SwapException, DAOException {
+		myPrefs = session.getPreferences();
+		Files.createDirectories(destination);
+		String targetFileName = destination.resolve(session.getProcess().getTitel() + "_mets.xml").toString();
+		return writeMetsFile(session.getProcess(), targetFileName, session.getFileformat(), false);
+	}
+
+}
@@ -0,0 +1,185 @@
+package de.intranda.goobi.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Hidden folder in the export target, in which a package is assembled before it is moved to its final name. As the
+ * staging folder is on the same file system, the complete folder or archive appears in the target with a single
+ * rename, so that systems watching the target never see a partial package.
+ */
+@Log4j2
+public class StagingArea implements Closeable {
+
+	static final String PREFIX = ".exportPackage-staging-";
+	/** marker of a staging folder that belongs to an interrupted export, which can be resumed */
+	static final String RESUMABLE = ".resumable";
+
+	// staging folders of the running exports of this application
+	private static final Set<Path> IN_USE = new HashSet<>();
+	// targets that were cleaned up since the start of the application
+	private static final Set<Path> CLEANED_TARGETS = new HashSet<>();
+
+	@Getter
+	private final Path directory;
+	private boolean resumable;
+	private boolean committed;
+
+	private StagingArea(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Open the staging folder of an export. The first time a target is used, orphaned staging folders of exports that
+	 * were interrupted and can't be resumed are deleted.
+	 * 
+	 * @param target the export target
+	 * @param name a name unique for the exported process, e.g. the process id
+	 * @param resume true to keep the content of an existing staging folder for a resumed export
+	 * @return the staging area
+	 * @throws IOException if the staging folder is in use by another export or can't be created
+	 */
+	public static StagingArea open(Path target, String name, boolean resume) throws IOException {
+		Path directory = target.resolve(PREFIX + name).toAbsolutePath().normalize();
+		synchronized (IN_USE) {
+			if (CLEANED_TARGETS.add(directory.getParent())) {
+				deleteOrphans(directory.getParent());
+			}
+			if (!IN_USE.add(directory)) {
+				throw new IOException("The staging folder " + directory + " is used by another export");
+			}
+		}
+		StagingArea staging = new StagingArea(directory);
+		try {
+			if (!resume) {
+				delete(directory);
+			}
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			staging.close();
+			throw e;
+		}
+		return staging;
+	}
+
+	private static void deleteOrphans(Path target) {
+		if (!Files.isDirectory(target)) {
+			return;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(target, PREFIX + "*")) {
+			for (Path directory : stream) {
+				if (!IN_USE.contains(directory) && !Files.exists(directory.resolve(RESUMABLE))) {
+					log.info("Deleting orphaned staging folder {}", directory);
+					delete(directory);
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Orphaned staging folders in {} could not be deleted", target, e);
+		}
+	}
+
+	/**
+	 * @param destination the final destination of a folder or file
+	 * @return the location of the folder or file in the staging area
+	 */
+	public Path resolve(Path destination) {
+		return directory.resolve(destination.getFileName().toString());
+	}
+
+	/**
+	 * Keep the staging folder after a failed export, because the export can be resumed
+	 * 
+	 * @param resumable true if the export can be resumed
+	 * @throws IOException
+	 */
+	public void setResumable(boolean resumable) throws IOException {
+		this.resumable = resumable;
+		Path marker = directory.resolve(RESUMABLE);
+		if (resumable) {
+			if (!Files.exists(marker)) {
+				Files.createFile(marker);
+			}
+		} else {
+			Files.deleteIfExists(marker);
+		}
+	}
+
+	/**
+	 * Move a completed folder or file from the staging area to its final destination. A file replaces an existing file
+	 * atomically, an existing folder is moved away and deleted after the new folder is in place.
+	 * 
+	 * @param destination the final destination
+	 * @throws IOException
+	 */
+	public void commit(Path destination) throws IOException {
+		Path staged = resolve(destination);
+		Files.createDirectories(destination.getParent());
+		if (Files.isDirectory(staged) && Files.exists(destination)) {
+			Path previous = directory.resolve(".previous");
+			delete(previous);
+			move(destination, previous);
+			move(staged, destination);
+			delete(previous);
+		} else {
+			move(staged, destination);
+		}
+		committed = true;
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			log.warn("{} can't be moved atomically to {}", source, target);
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Delete the staging folder, unless the export failed and can be resumed
+	 */
+	@Override
+	public void close() {
+		try {
+			if (committed || !resumable) {
+				delete(directory);
+			}
+		} catch (IOException e) {
+			log.error("Error deleting the staging folder {}", directory, e);
+		} finally {
+			synchronized (IN_USE) {
+				IN_USE.remove(directory);
+			}
+		}
+	}
+
+	private static void delete(Path folder) throws IOException {
+		if (!Files.exists(folder)) {
+			return;
+		}
+		List<Path> paths = new ArrayList<>();
+		try (Stream<Path> stream = Files.walk(folder)) {
+			stream.forEach(paths::add);
+		}
+		// children first
+		Collections.reverse(paths);
+		for (Path path : paths) {
+			Files.deleteIfExists(path);
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.apache.commons.lang.StringUtils;
+
+import lombok.Setter;
+
+/**
+ * Streaming alternative to the {@link MetsRewritePipeline}. The METS file is rewritten in a single StAX pass without
+ * building a document tree.
+ * 
+ * The new mets:file IDs are derived from the old IDs with a random key per run instead of being stored in a map, only
+ * the old IDs are kept. Like the {@link UuidRewriteStep}, only the mets:fptr links of the pages in the physical
+ * structMap are updated and only if they point to a rewritten mets:file.
+ */
+public class StreamingMetsRewriter {
+
+	private static final String METS_NS = "http://www.loc.gov/METS/";
+	private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+	private static final QName ID = new QName("ID");
+	private static final QName FILEID = new QName("FILEID");
+	private static final QName USE = new QName("USE");
+	private static final QName TYPE = new QName("TYPE");
+	private static final QName CHECKSUM = new QName("CHECKSUM");
+	private static final QName CHECKSUMTYPE = new QName("CHECKSUMTYPE");
+	private static final QName HREF = new QName(XLINK_NS, "href");
+
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+	private static final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/** generate UUIDs for each mets:fileGrp and mets:file and update the mets:fptr links */
+	@Setter
+	private boolean replaceIds;
+	/** file group name (@USE) -> file name without extension -> checksum */
+	@Setter
+	private Map<String, Map<String, String>> checksumsPerFileGroup;
+	@Setter
+	private String checksumType;
+	/** replace this value in each mets:FLocat/@xlink:href */
+	@Setter
+	private String hrefSearchValue;
+	@Setter
+	private String hrefReplacement;
+
+	private byte[] idKey;
+	private MessageDigest idDigest;
+
+	public boolean isEmpty() {
+		return !replaceIds && checksumsPerFileGroup == null && StringUtils.isBlank(hrefSearchValue);
+	}
+
+	/**
+	 * Rewrite the METS file in place. The result is written to a temporary file next to the original which replaces
+	 * the original afterwards.
+	 * 
+	 * @param metsFile the exported METS file
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public void rewrite(Path metsFile) throws IOException, XMLStreamException {
+		if (isEmpty()) {
+			return;
+		}
+		Path tempFile = metsFile.resolveSibling(metsFile.getFileName() + ".tmp");
+		try (InputStream in = Files.newInputStream(metsFile); OutputStream out = Files.newOutputStream(tempFile)) {
+			rewrite(in, out);
+		} catch (IOException | XMLStreamException e) {
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+		Files.move(tempFile, metsFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Rewrite a METS document from the input stream into the output stream
+	 * 
+	 * @param in the METS document to read
+	 * @param out the stream to write the modified document to
+	 * @throws XMLStreamException
+	 */
+	public void rewrite(InputStream in, OutputStream out) throws XMLStreamException {
+		initializeIdDerivation();
+		XMLEventReader reader = inputFactory.createXMLEventReader(in);
+		XMLEventWriter writer = outputFactory.createXMLEventWriter(out, StandardCharsets.UTF_8.name());
+		try {
+			// old IDs of the mets:file elements that got a new ID
+			Set<String> replacedFileIds = new HashSet<>();
+			// depth of the current element within the physical structMap, -1 outside of it
+			int physicalDepth = -1;
+			Map<String, String> currentChecksums = null;
+			// events of the current mets:file, kept until its mets:FLocat is known
+			List<XMLEvent> fileBuffer = null;
+			StartElement fileStart = null;
+			String fileHref = null;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if (event.isStartElement()) {
+					StartElement element = event.asStartElement();
+					String name = element.getName().getLocalPart();
+					if (physicalDepth >= 0) {
+						physicalDepth++;
+					}
+					if (METS_NS.equals(element.getName().getNamespaceURI())) {
+						if ("structMap".equals(name)) {
+							Attribute type = element.getAttributeByName(TYPE);
+							if (type != null && "PHYSICAL".equals(type.getValue())) {
+								physicalDepth = 0;
+							}
+						} else if ("fileGrp".equals(name)) {
+							Attribute use = element.getAttributeByName(USE);
+							currentChecksums = use == null || checksumsPerFileGroup == null ? null
+									: checksumsPerFileGroup.get(use.getValue());
+							if (replaceIds) {
+								element = replaceAttribute(element, ID, UUID.randomUUID().toString());
+							}
+						} else if ("file".equals(name)) {
+							if (replaceIds) {
+								Attribute oldId = element.getAttributeByName(ID);
+								if (oldId != null) {
+									replacedFileIds.add(oldId.getValue());
+								}
+								element = replaceAttribute(element, ID, deriveId(oldId));
+							}
+							if (currentChecksums != null) {
+								fileStart = element;
+								fileBuffer = new ArrayList<>();
+								fileHref = null;
+								continue;
+							}
+						} else if ("FLocat".equals(name)) {
+							Attribute href = element.getAttributeByName(HREF);
+							if (href != null) {
+								fileHref = href.getValue();
+								if (StringUtils.isNotBlank(hrefSearchValue)) {
+									element = replaceAttribute(element, HREF,
+											href.getValue().replace(hrefSearchValue, hrefReplacement));
+								}
+							}
+						} else if (replaceIds && "fptr".equals(name) && physicalDepth == 3) {
+							// structMap/div/div/fptr
+							Attribute fileId = element.getAttributeByName(FILEID);
+							if (fileId != null && replacedFileIds.contains(fileId.getValue())) {
+								element = replaceAttribute(element, FILEID, deriveId(fileId));
+							}
+						}
+					}
+					event = element;
+				} else if (event.isEndElement() && physicalDepth >= 0) {
+					physicalDepth--;
+				}
+				if (event.isEndElement() && METS_NS.equals(event.asEndElement().getName().getNamespaceURI())) {
+					String name = event.asEndElement().getName().getLocalPart();
+					if ("fileGrp".equals(name)) {
+						currentChecksums = null;
+					} else if ("file".equals(name) && fileBuffer != null) {
+						String checksum = fileHref == null ? null
+								: currentChecksums.get(ChecksumRewriteStep.getBasename(fileHref));
+						if (StringUtils.isNotBlank(checksum)) {
+							fileStart = replaceAttribute(fileStart, CHECKSUMTYPE, checksumType);
+							fileStart = replaceAttribute(fileStart, CHECKSUM, checksum);
+						}
+						writer.add(fileStart);
+						for (XMLEvent buffered : fileBuffer) {
+							writer.add(buffered);
+						}
+						fileBuffer = null;
+						fileStart = null;
+					}
+				}
+				if (fileBuffer != null) {
+					fileBuffer.add(event);
+				} else {
+					writer.add(event);
+					if (event.isStartDocument()) {
+						writer.add(eventFactory.createCharacters("\n"));
+					}
+				}
+			}
+			writer.flush();
+		} finally {
+			reader.close();
+			writer.close();
+		}
+	}
+
+	private void initializeIdDerivation() {
+		if (!replaceIds) {
+			return;
+		}
+		idKey = new byte[16];
+		new SecureRandom().nextBytes(idKey);
+		try {
+			idDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is guaranteed to be available on every java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Derive the new ID from the old one. The result is formatted like a random (v4) UUID, equal old IDs always result
+	 * in equal new IDs within the same run.
+	 */
+	private String deriveId(Attribute oldId) {
+		if (oldId == null) {
+			return UUID.randomUUID().toString();
+		}
+		idDigest.reset();
+		idDigest.update(idKey);
+		byte[] hash = idDigest.digest(oldId.getValue().getBytes(StandardCharsets.UTF_8));
+		hash[6] = (byte) ((hash[6] & 0x0f) | 0x40);
+		hash[8] = (byte) ((hash[8] & 0x3f) | 0x80);
+		ByteBuffer buffer = ByteBuffer.wrap(hash);
+		return new UUID(buffer.getLong(), buffer.getLong()).toString();
+	}
+
+	private static StartElement replaceAttribute(StartElement element, QName name, String value) {
+		List<Attribute> attributes = new ArrayList<>();
+		QName attributeName = name;
+		Iterator<Attribute> it = element.getAttributes();
+		while (it.hasNext()) {
+			Attribute attribute = it.next();
+			if (attribute.getName().equals(name)) {
+				// keep the prefix of the existing attribute
+				attributeName = attribute.getName();
+			} else {
+				attributes.add(attribute);
+			}
+		}
+		attributes.add(eventFactory.createAttribute(attributeName, value));
+		return eventFactory.createStartElement(element.getName(), attributes.iterator(), element.getNamespaces());
+	}
+
+}
@@ -0,0 +1,237 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a POSIX tar archive directly from the original file locations, optionally compressed with gzip or Zstandard.
+ * The archive is written in a single streaming pass. The compression runs on several threads, if configured. Long or
+ * non ASCII file names and files larger than 8 GB are stored with pax extended headers.
+ */
+public class TarPackageWriter implements PackageArchiveWriter {
+
+	static final int BLOCK_SIZE = 512;
+	private static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+	private static final int NAME_LENGTH = 100;
+	private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[ZipPackageWriter.BUFFER_SIZE];
+	private long written;
+
+	/**
+	 * @param tarFile the archive to create, an existing file gets replaced
+	 * @param format the format of the archive, one of the tar formats
+	 * @param level the compression level, -1 uses the default of the compression
+	 * @param threads the number of threads compressing the archive
+	 * @throws IOException
+	 */
+	public TarPackageWriter(Path tarFile, ArchiveFormat format, int level, int threads) throws IOException {
+		OutputStream file = new BufferedOutputStream(Files.newOutputStream(tarFile), ZipPackageWriter.BUFFER_SIZE);
+		try {
+			out = new BufferedOutputStream(getCompressedStream(file, format, level, threads), ZipPackageWriter.BUFFER_SIZE);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	private static OutputStream getCompressedStream(OutputStream file, ArchiveFormat format, int level, int threads)
+			throws IOException {
+		switch (format) {
+			case TAR_GZ:
+				if (threads > 1) {
+					return new ParallelGzipOutputStream(file, level, threads);
+				}
+				return new GZIPOutputStream(file, ZipPackageWriter.BUFFER_SIZE) {
+					{
+						def.setLevel(level);
+					}
+				};
+			case TAR_ZST:
+				try {
+					// the library is only loaded here, the other formats work without it
+					return ZstdCompression.newOutputStream(file, level, threads);
+				} catch (LinkageError e) {
+					throw new IOException(ArchiveFormat.TAR_ZST.getUnavailableMessage(), e);
+				}
+			case TAR:
+				return file;
+			default:
+				throw new IllegalArgumentException("Not a tar format: " + format);
+		}
+	}
+
+	@Override
+	public void addDirectory(String name) throws IOException {
+		writeHeader(name.endsWith("/") ? name : name + "/", 0, System.currentTimeMillis(), (byte) '5');
+	}
+
+	@Override
+	public void addFile(String name, Path source, String checksumType, Consumer<String> checksumConsumer)
+			throws IOException {
+		MessageDigest digest = checksumType == null ? null
+				: ChecksumVerifier.getMessageDigest(ChecksumVerifier.getDigestAlgorithm(checksumType));
+		BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+		long size = attributes.size();
+		writeHeader(name, size, attributes.lastModifiedTime().toMillis(), (byte) '0');
+		// the size is part of the header, so exactly this number of bytes is written
+		long remaining = size;
+		try (InputStream in = IoGovernor.getInstance().newInputStream(source)) {
+			while (remaining > 0) {
+				int length = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (length == -1) {
+					throw new EOFException(source + " was truncated while it was added to the archive");
+				}
+				if (digest != null) {
+					digest.update(buffer, 0, length);
+				}
+				write(buffer, 0, length);
+				remaining -= length;
+			}
+		}
+		pad();
+		if (digest != null && checksumConsumer != null) {
+			checksumConsumer.accept(ChecksumVerifier.toHex(digest.digest()));
+		}
+	}
+
+	@Override
+	public void addFile(String name, byte[] content) throws IOException {
+		writeHeader(name, content.length, System.currentTimeMillis(), (byte) '0');
+		write(content, 0, content.length);
+		pad();
+	}
+
+	private void writeHeader(String name, long size, long lastModified, byte type) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		boolean longName = nameBytes.length > NAME_LENGTH || nameBytes.length != name.length();
+		if (longName || size > MAX_OCTAL_SIZE) {
+			Map<String, String> records = new LinkedHashMap<>();
+			if (longName) {
+				records.put("path", name);
+			}
+			if (size > MAX_OCTAL_SIZE) {
+				records.put("size", String.valueOf(size));
+			}
+			byte[] pax = getPaxRecords(records);
+			writeBlock(createHeader(getShortName("PaxHeaders/" + name), pax.length, lastModified, (byte) 'x'));
+			write(pax, 0, pax.length);
+			pad();
+		}
+		writeBlock(createHeader(longName ? getShortName(name) : name, Math.min(size, MAX_OCTAL_SIZE), lastModified,
+				type));
+	}
+
+	/**
+	 * @return an ASCII name with at most 100 bytes, used by readers without pax support
+	 */
+	private static String getShortName(String name) {
+		StringBuilder shortName = new StringBuilder();
+		for (int i = 0; i < name.length() && shortName.length() < NAME_LENGTH; i++) {
+			char c = name.charAt(i);
+			shortName.append(c < 128 ? c : '_');
+		}
+		return shortName.toString();
+	}
+
+	static byte[] getPaxRecords(Map<String, String> records) {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, String> record : records.entrySet()) {
+			// each record starts with its own length in bytes, including the length field
+			int length = (" " + record.getKey() + "=" + record.getValue() + "\n").getBytes(StandardCharsets.UTF_8).length;
+			int total = length + String.valueOf(length).length();
+			if (String.valueOf(total).length() > String.valueOf(length).length()) {
+				total++;
+			}
+			result.append(total).append(' ').append(record.getKey()).append('=').append(record.getValue()).append('\n');
+		}
+		return result.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] createHeader(String name, long size, long lastModified, byte type) {
+		byte[] header = new byte[BLOCK_SIZE];
+		byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, NAME_LENGTH));
+		writeOctal(header, 100, 8, type == '5' ? 0755 : 0644);
+		writeOctal(header, 108, 8, 0);
+		writeOctal(header, 116, 8, 0);
+		writeOctal(header, 124, 12, size);
+		writeOctal(header, 136, 12, Math.max(0, lastModified / 1000));
+		header[156] = type;
+		System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+		// the checksum is calculated with spaces in the checksum field
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		long checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xff;
+		}
+		writeOctal(header, 148, 7, checksum);
+		return header;
+	}
+
+	/**
+	 * Write a number as octal digits with leading zeros, followed by a NUL byte
+	 */
+	private static void writeOctal(byte[] header, int offset, int length, long value) {
+		String octal = Long.toOctalString(value);
+		int digits = length - 1;
+		for (int i = 0; i < digits; i++) {
+			int index = octal.length() - digits + i;
+			header[offset + i] = (byte) (index < 0 ? '0' : octal.charAt(index));
+		}
+		header[offset + digits] = 0;
+	}
+
+	private void writeBlock(byte[] block) throws IOException {
+		write(block, 0, block.length);
+	}
+
+	private void write(byte[] data, int offset, int length) throws IOException {
+		out.write(data, offset, length);
+		written += length;
+	}
+
+	/**
+	 * Fill the last block of an entry with zeros
+	 */
+	private void pad() throws IOException {
+		int remainder = (int) (written % BLOCK_SIZE);
+		if (remainder > 0) {
+			write(new byte[BLOCK_SIZE - remainder], 0, BLOCK_SIZE - remainder);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// all files are written on the calling thread, the checksums are already known
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			// two empty blocks mark the end of the archive, filled up to a full record
+			write(new byte[2 * BLOCK_SIZE], 0, 2 * BLOCK_SIZE);
+			int remainder = (int) (written % RECORD_SIZE);
+			if (remainder > 0) {
+				write(new byte[RECORD_SIZE - remainder], 0, RECORD_SIZE - remainder);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+}
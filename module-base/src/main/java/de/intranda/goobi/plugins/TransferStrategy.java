@@ -0,0 +1,65 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * The way files are transferred into the export folder. If a strategy is not supported between source and target, the
+ * next faster strategy is used, down to a plain copy.
+ */
+public enum TransferStrategy {
+
+	/** regular copy through the JVM */
+	COPY("copy"),
+	/** copy with FileChannel.transferTo, which lets the operating system move the data */
+	ZERO_COPY("zerocopy"),
+	/** copy on write clone, e.g. on btrfs or xfs; the exported file shares the data blocks with the source */
+	REFLINK("reflink"),
+	/** hard link to the source file; changes of the exported file change the source as well */
+	HARDLINK("hardlink"),
+	/** use a reflink on the same file system and a zero copy otherwise */
+	AUTO("auto");
+
+	private final String name;
+
+	private TransferStrategy(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the strategy to use if this one is not supported or null, if there is none
+	 */
+	public TransferStrategy getFallback() {
+		switch (this) {
+			case HARDLINK:
+			case AUTO:
+				return REFLINK;
+			case REFLINK:
+				return ZERO_COPY;
+			case ZERO_COPY:
+				return COPY;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Parse the configured value
+	 * 
+	 * @param value the configured name, case is ignored
+	 * @param defaultStrategy the strategy to use if the value is empty or unknown
+	 * @return the strategy
+	 */
+	public static TransferStrategy getByName(String value, TransferStrategy defaultStrategy) {
+		if (value != null) {
+			for (TransferStrategy strategy : values()) {
+				if (strategy.name.equalsIgnoreCase(value.trim())) {
+					return strategy;
+				}
+			}
+		}
+		return defaultStrategy;
+	}
+
+}
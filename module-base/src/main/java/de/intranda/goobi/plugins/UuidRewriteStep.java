@@ -0,0 +1,61 @@
+package de.intranda.goobi.plugins;
+
+import static de.intranda.goobi.plugins.MetsRewritePipeline.mets;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.lang.StringUtils;
+import org.jdom2.Element;
+
+/**
+ * Replaces the @ID of each mets:fileGrp and mets:file with a UUID and updates the mets:fptr links of the physical
+ * structMap accordingly.
+ */
+public class UuidRewriteStep implements MetsRewriteStep {
+
+	@Override
+	public void apply(Element root) {
+		Element fileSec = root.getChild("fileSec", mets);
+		List<Element> fileGroups = fileSec.getChildren();
+
+		// - UUIDs as @ID for each mets:fileGrp and mets:file within
+		Map<String, String> idMap = new HashMap<>();
+		for (Element fileGroup : fileGroups) {
+			// create new UUID for fileGrp @ID
+			UUID uuid = UUID.randomUUID();
+			fileGroup.setAttribute("ID", uuid.toString());
+
+			// create new UUID for each file and store it in ID attribute
+			for (Element file : fileGroup.getChildren()) {
+				String oldId = file.getAttributeValue("ID");
+				String newId = UUID.randomUUID().toString();
+				file.setAttribute("ID", newId);
+				// save mapping from old to new id
+				idMap.put(oldId, newId);
+			}
+		}
+		// - update fptr, link to uuids
+		List<Element> structMaps = root.getChildren("structMap", mets);
+		for (Element structMap : structMaps) {
+			if ("PHYSICAL".equals(structMap.getAttributeValue("TYPE"))) {
+				Element physSequence = structMap.getChild("div", mets);
+				List<Element> pages = physSequence.getChildren();
+				for (Element page : pages) {
+					List<Element> filePointer = page.getChildren("fptr", mets);
+					for (Element fptr : filePointer) {
+						String oldId = fptr.getAttributeValue("FILEID");
+
+						String newId = idMap.get(oldId);
+						if (StringUtils.isNotBlank(newId)) {
+							fptr.setAttribute("FILEID", newId);
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
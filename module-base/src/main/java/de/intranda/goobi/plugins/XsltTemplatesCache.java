@@ -0,0 +1,100 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * JVM wide cache of compiled stylesheets. A stylesheet is compiled again, if its modification date or size has
+ * changed. The least recently used stylesheets are removed, if the cache is full.
+ */
+@Log4j2
+public class XsltTemplatesCache {
+
+	static final int DEFAULT_MAX_SIZE = 32;
+
+	private static final XsltTemplatesCache INSTANCE = new XsltTemplatesCache(DEFAULT_MAX_SIZE);
+
+	private final TransformerFactory factory = TransformerFactory.newInstance();
+	private final Map<Path, CachedTemplates> cache;
+
+	XsltTemplatesCache(int maxSize) {
+		this.cache = new LinkedHashMap<Path, CachedTemplates>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, CachedTemplates> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public static XsltTemplatesCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Get the compiled stylesheet, compile it if it is not cached yet or has changed on disk
+	 * 
+	 * @param xsl the stylesheet file
+	 * @return the compiled stylesheet, which can be used by several threads
+	 * @throws IOException
+	 * @throws TransformerConfigurationException
+	 */
+	public Templates getTemplates(Path xsl) throws IOException, TransformerConfigurationException {
+		Path key = xsl.toAbsolutePath().normalize();
+		BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		synchronized (cache) {
+			CachedTemplates cached = cache.get(key);
+			if (cached != null && cached.lastModified == lastModified && cached.size == attributes.size()) {
+				return cached.templates;
+			}
+		}
+		log.debug("Compiling stylesheet {}", key);
+		Templates templates;
+		// the factory is not thread safe
+		synchronized (factory) {
+			templates = factory.newTemplates(new StreamSource(key.toFile()));
+		}
+		synchronized (cache) {
+			cache.put(key, new CachedTemplates(templates, lastModified, attributes.size()));
+		}
+		return templates;
+	}
+
+	int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	private static class CachedTemplates {
+		private final Templates templates;
+		private final long lastModified;
+		private final long size;
+
+		private CachedTemplates(Templates templates, long lastModified, long size) {
+			this.templates = templates;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+	}
+
+}
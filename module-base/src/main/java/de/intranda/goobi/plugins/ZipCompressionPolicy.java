@@ -0,0 +1,61 @@
+package de.intranda.goobi.plugins;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import lombok.Getter;
+
+/**
+ * Decides how the entries of a zip file are compressed. Files with one of the configured extensions (usually already
+ * compressed images) are stored without compression, all other files are deflated with the configured level.
+ */
+public class ZipCompressionPolicy {
+
+	private final Set<String> storedExtensions = new HashSet<>();
+	@Getter
+	private final int level;
+
+	/**
+	 * Deflate all entries with the default compression level
+	 */
+	public ZipCompressionPolicy() {
+		this(null, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param storedExtensions comma separated list of file extensions to store without compression, e.g. 'tif,jp2'
+	 * @param level the deflate level from 0 to 9 or -1 for the default level
+	 */
+	public ZipCompressionPolicy(String storedExtensions, int level) {
+		if (storedExtensions != null) {
+			for (String extension : storedExtensions.split(",")) {
+				extension = extension.trim().toLowerCase(Locale.ROOT);
+				if (extension.startsWith(".")) {
+					extension = extension.substring(1);
+				}
+				if (!extension.isEmpty()) {
+					this.storedExtensions.add(extension);
+				}
+			}
+		}
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level " + level);
+		}
+		this.level = level;
+	}
+
+	/**
+	 * @param name the name of the zip entry
+	 * @return true if the entry is stored without compression
+	 */
+	public boolean isStored(String name) {
+		int dot = name.lastIndexOf('.');
+		if (dot < 0 || dot < name.lastIndexOf('/')) {
+			return false;
+		}
+		return storedExtensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+
+}
@@ -0,0 +1,148 @@
+package de.intranda.goobi.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip archive directly from the original file locations, so that the package doesn't need to be copied into
+ * a folder first. All entries are compressed one after another on the calling thread. Each file is read only once,
+ * crc and sizes are written into the local header of the entry after its data.
+ */
+public class ZipPackageWriter implements PackageArchiveWriter {
+
+	static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final ZipRecordWriter zip;
+	private final ZipCompressionPolicy compressionPolicy;
+	private final Deflater deflater;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final byte[] deflateBuffer = new byte[64 * 1024];
+
+	/**
+	 * @param zipFile the archive to create, an existing file gets replaced
+	 * @throws IOException
+	 */
+	public ZipPackageWriter(Path zipFile) throws IOException {
+		this(zipFile, new ZipCompressionPolicy());
+	}
+
+	/**
+	 * @param zipFile the archive to create, an existing file gets replaced
+	 * @param compressionPolicy decides which entries are compressed
+	 * @throws IOException
+	 */
+	public ZipPackageWriter(Path zipFile, ZipCompressionPolicy compressionPolicy) throws IOException {
+		this.compressionPolicy = compressionPolicy;
+		zip = new ZipRecordWriter(zipFile);
+		deflater = new Deflater(compressionPolicy.getLevel(), true);
+	}
+
+	@Override
+	public void addDirectory(String name) throws IOException {
+		ZipRecordWriter.Entry entry = new ZipRecordWriter.Entry(name.endsWith("/") ? name : name + "/",
+				System.currentTimeMillis());
+		entry.method = ZipRecordWriter.METHOD_STORED;
+		zip.writeLocalHeader(entry);
+	}
+
+	@Override
+	public void addFile(String name, Path source, String checksumType, Consumer<String> checksumConsumer)
+			throws IOException {
+		MessageDigest digest = checksumType == null ? null
+				: ChecksumVerifier.getMessageDigest(ChecksumVerifier.getDigestAlgorithm(checksumType));
+		long time = Files.getLastModifiedTime(source).toMillis();
+		try (InputStream in = IoGovernor.getInstance().newInputStream(source)) {
+			writeEntry(new ZipRecordWriter.Entry(name, time), in, Files.size(source), digest);
+		}
+		if (digest != null && checksumConsumer != null) {
+			checksumConsumer.accept(ChecksumVerifier.toHex(digest.digest()));
+		}
+	}
+
+	@Override
+	public void addFile(String name, byte[] content) throws IOException {
+		writeEntry(new ZipRecordWriter.Entry(name, System.currentTimeMillis()), new ByteArrayInputStream(content),
+				content.length, null);
+	}
+
+	/**
+	 * Copy or deflate the data into the archive and calculate the crc on the way
+	 *
+	 * @param entry the new entry
+	 * @param in the uncompressed data
+	 * @param expectedSize the size of the data, the file must not grow while it is written
+	 * @param digest calculates the checksum of the data, may be null
+	 * @throws IOException
+	 */
+	private void writeEntry(ZipRecordWriter.Entry entry, InputStream in, long expectedSize, MessageDigest digest)
+			throws IOException {
+		boolean stored = compressionPolicy.isStored(entry.name);
+		entry.method = stored ? ZipRecordWriter.METHOD_STORED : ZipRecordWriter.METHOD_DEFLATED;
+		entry.size = expectedSize;
+		// deflate adds at most 5 bytes per 16 KB block to incompressible data
+		entry.compressedSize = stored ? expectedSize : expectedSize + expectedSize / 16384 * 5 + 64;
+		zip.writeLocalHeader(entry);
+		CRC32 crc = new CRC32();
+		long size = 0;
+		long compressedSize = 0;
+		deflater.reset();
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			crc.update(buffer, 0, length);
+			if (digest != null) {
+				digest.update(buffer, 0, length);
+			}
+			size += length;
+			if (stored) {
+				zip.write(buffer, 0, length);
+				compressedSize += length;
+			} else {
+				deflater.setInput(buffer, 0, length);
+				while (!deflater.needsInput()) {
+					compressedSize += drainDeflater();
+				}
+			}
+		}
+		if (!stored) {
+			deflater.finish();
+			while (!deflater.finished()) {
+				compressedSize += drainDeflater();
+			}
+		}
+		if (size > expectedSize) {
+			throw new IOException("File changed while writing the archive: " + entry.name);
+		}
+		entry.crc = crc.getValue();
+		entry.size = size;
+		entry.compressedSize = compressedSize;
+		zip.updateLocalHeader(entry);
+	}
+
+	private int drainDeflater() throws IOException {
+		int length = deflater.deflate(deflateBuffer);
+		zip.write(deflateBuffer, 0, length);
+		return length;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// entries are complete as soon as they are added
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			zip.close();
+		} finally {
+			deflater.end();
+		}
+	}
+
+}
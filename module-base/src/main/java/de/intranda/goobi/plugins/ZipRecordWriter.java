@@ -0,0 +1,261 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the records of a zip archive into a file: the local headers, the entry data and the central directory. As the
+ * file is seekable, crc and sizes of an entry can be written into its local header after the data, so that each entry
+ * is written in a single pass without a data descriptor. ZIP64 extensions are used for entries and archives larger
+ * than 4 GB and for more than 65535 entries.
+ */
+class ZipRecordWriter implements Closeable {
+
+	static final int METHOD_STORED = 0;
+	static final int METHOD_DEFLATED = 8;
+
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private static final int FLAG_UTF8 = 0x0800;
+	// offset of the crc within the local header
+	private static final int LOCAL_HEADER_CRC = 14;
+	private static final int LOCAL_HEADER_LENGTH = 30;
+
+	private final FileChannel channel;
+	private final OutputStream out;
+	private final List<Entry> centralDirectory = new ArrayList<>();
+	private long offset;
+
+	/**
+	 * @param zipFile the archive to create, an existing file gets replaced
+	 * @throws IOException
+	 */
+	ZipRecordWriter(Path zipFile) throws IOException {
+		channel = FileChannel.open(zipFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		out = new BufferedOutputStream(Channels.newOutputStream(channel), ZipPackageWriter.BUFFER_SIZE);
+	}
+
+	/**
+	 * Start a new entry. Size and compressed size of the entry must not be smaller than the final values, as they
+	 * decide whether the local header gets a ZIP64 extra field.
+	 *
+	 * @param entry the entry to start
+	 * @throws IOException
+	 */
+	void writeLocalHeader(Entry entry) throws IOException {
+		entry.localHeaderOffset = offset;
+		entry.localZip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+		writeInt(0x04034b50L);
+		writeShort(entry.localZip64 ? VERSION_ZIP64 : VERSION);
+		writeShort(FLAG_UTF8);
+		writeShort(entry.method);
+		writeInt(entry.dosTime);
+		writeInt(entry.crc);
+		writeInt(entry.localZip64 ? ZIP64_MAGIC : entry.compressedSize);
+		writeInt(entry.localZip64 ? ZIP64_MAGIC : entry.size);
+		writeShort(entry.nameBytes.length);
+		writeShort(entry.localZip64 ? 20 : 0);
+		write(entry.nameBytes, 0, entry.nameBytes.length);
+		if (entry.localZip64) {
+			writeShort(0x0001);
+			writeShort(16);
+			writeLong(entry.size);
+			writeLong(entry.compressedSize);
+		}
+		centralDirectory.add(entry);
+	}
+
+	/**
+	 * Write crc and sizes of an entry into its local header, after its data was written
+	 *
+	 * @param entry the entry with the final crc and sizes
+	 * @throws IOException
+	 */
+	void updateLocalHeader(Entry entry) throws IOException {
+		if (!entry.localZip64 && (entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC)) {
+			throw new IOException("The entry " + entry.name + " is larger than announced in its local header");
+		}
+		out.flush();
+		ByteBuffer values = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		values.putInt((int) entry.crc);
+		values.putInt((int) (entry.localZip64 ? ZIP64_MAGIC : entry.compressedSize));
+		values.putInt((int) (entry.localZip64 ? ZIP64_MAGIC : entry.size));
+		values.flip();
+		writeAt(values, entry.localHeaderOffset + LOCAL_HEADER_CRC);
+		if (entry.localZip64) {
+			ByteBuffer extra = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+			extra.putLong(entry.size);
+			extra.putLong(entry.compressedSize);
+			extra.flip();
+			// behind the header id and length of the extra field
+			writeAt(extra, entry.localHeaderOffset + LOCAL_HEADER_LENGTH + entry.nameBytes.length + 4);
+		}
+	}
+
+	private void writeAt(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Write the central directory and close the file
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			writeCentralDirectory();
+			out.flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void writeCentralDirectory() throws IOException {
+		long centralDirectoryOffset = offset;
+		for (Entry entry : centralDirectory) {
+			boolean sizeZip64 = entry.size >= ZIP64_MAGIC;
+			boolean compressedSizeZip64 = entry.compressedSize >= ZIP64_MAGIC;
+			boolean offsetZip64 = entry.localHeaderOffset >= ZIP64_MAGIC;
+			int extraLength = (sizeZip64 ? 8 : 0) + (compressedSizeZip64 ? 8 : 0) + (offsetZip64 ? 8 : 0);
+			boolean zip64 = extraLength > 0;
+			writeInt(0x02014b50L);
+			writeShort(VERSION_ZIP64);
+			writeShort(zip64 || entry.localZip64 ? VERSION_ZIP64 : VERSION);
+			writeShort(FLAG_UTF8);
+			writeShort(entry.method);
+			writeInt(entry.dosTime);
+			writeInt(entry.crc);
+			writeInt(compressedSizeZip64 ? ZIP64_MAGIC : entry.compressedSize);
+			writeInt(sizeZip64 ? ZIP64_MAGIC : entry.size);
+			writeShort(entry.nameBytes.length);
+			writeShort(zip64 ? extraLength + 4 : 0);
+			// comment length, disk number, internal attributes
+			writeShort(0);
+			writeShort(0);
+			writeShort(0);
+			// external attributes: MS-DOS directory flag
+			writeInt(entry.name.endsWith("/") ? 0x10 : 0);
+			writeInt(offsetZip64 ? ZIP64_MAGIC : entry.localHeaderOffset);
+			write(entry.nameBytes, 0, entry.nameBytes.length);
+			if (zip64) {
+				writeShort(0x0001);
+				writeShort(extraLength);
+				if (sizeZip64) {
+					writeLong(entry.size);
+				}
+				if (compressedSizeZip64) {
+					writeLong(entry.compressedSize);
+				}
+				if (offsetZip64) {
+					writeLong(entry.localHeaderOffset);
+				}
+			}
+		}
+		long centralDirectorySize = offset - centralDirectoryOffset;
+		int entries = centralDirectory.size();
+		if (entries >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC) {
+			long zip64EndOffset = offset;
+			// zip64 end of central directory record
+			writeInt(0x06064b50L);
+			writeLong(44);
+			writeShort(VERSION_ZIP64);
+			writeShort(VERSION_ZIP64);
+			writeInt(0);
+			writeInt(0);
+			writeLong(entries);
+			writeLong(entries);
+			writeLong(centralDirectorySize);
+			writeLong(centralDirectoryOffset);
+			// zip64 end of central directory locator
+			writeInt(0x07064b50L);
+			writeInt(0);
+			writeLong(zip64EndOffset);
+			writeInt(1);
+		}
+		writeInt(0x06054b50L);
+		writeShort(0);
+		writeShort(0);
+		writeShort(Math.min(entries, ZIP64_MAGIC_COUNT));
+		writeShort(Math.min(entries, ZIP64_MAGIC_COUNT));
+		writeInt(Math.min(centralDirectorySize, ZIP64_MAGIC));
+		writeInt(Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+		writeShort(0);
+	}
+
+	/**
+	 * Write entry data
+	 */
+	void write(byte[] bytes, int start, int length) throws IOException {
+		out.write(bytes, start, length);
+		offset += length;
+	}
+
+	private void writeShort(int value) throws IOException {
+		out.write(value & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+		offset += 2;
+	}
+
+	private void writeInt(long value) throws IOException {
+		writeShort((int) (value & 0xFFFF));
+		writeShort((int) ((value >>> 16) & 0xFFFF));
+	}
+
+	private void writeLong(long value) throws IOException {
+		writeInt(value & ZIP64_MAGIC);
+		writeInt(value >>> 32);
+	}
+
+	/**
+	 * Convert a java timestamp into the MS-DOS date and time format used by zip files
+	 */
+	static long toDosTime(long time) {
+		LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		if (date.getYear() < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return ((long) (date.getYear() - 1980) << 25) | ((long) date.getMonthValue() << 21)
+				| ((long) date.getDayOfMonth() << 16) | ((long) date.getHour() << 11) | ((long) date.getMinute() << 5)
+				| (date.getSecond() >> 1);
+	}
+
+	/**
+	 * Name, method, crc and sizes of an entry
+	 */
+	static class Entry {
+		final String name;
+		final byte[] nameBytes;
+		final long dosTime;
+		int method;
+		long crc;
+		long size;
+		long compressedSize;
+		private long localHeaderOffset;
+		private boolean localZip64;
+
+		Entry(String name, long time) {
+			this.name = name;
+			this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			this.dosTime = toDosTime(time);
+		}
+	}
+
+}
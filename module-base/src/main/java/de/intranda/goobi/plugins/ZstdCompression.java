@@ -0,0 +1,36 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Creates Zstandard streams for tar.zst archives. The zstd-jni library is not part of the plugin jar and must be
+ * installed in the lib folder of Goobi. All references to the library are kept in this class, which is only loaded when
+ * a tar.zst archive is written, so that the other formats work without the library.
+ */
+final class ZstdCompression {
+
+	private static final int DEFAULT_LEVEL = 3;
+
+	private ZstdCompression() {
+	}
+
+	/**
+	 * @param out the stream the compressed data is written to
+	 * @param level the compression level, -1 uses the default level
+	 * @param threads the number of threads compressing the data
+	 * @return the compressing stream
+	 * @throws IOException
+	 */
+	static OutputStream newOutputStream(OutputStream out, int level, int threads) throws IOException {
+		ZstdOutputStream zstd = new ZstdOutputStream(out, level < 0 ? DEFAULT_LEVEL : level);
+		zstd.setChecksum(true);
+		if (threads > 1) {
+			zstd.setWorkers(threads);
+		}
+		return zstd;
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChecksumIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParse() throws Exception {
+        Path file = folder.newFile("master.sha1").toPath();
+        String content = "# comment\r\n" + "aaa  00000001.tif\r\n" + "\n" + "bbb *./00000002.tif\n" + "invalid\n"
+                + "ccc  \u00dcbersicht.tif";
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> checksums = ChecksumIndex.parse(file);
+        assertEquals(3, checksums.size());
+        assertEquals("aaa", checksums.get("00000001.tif"));
+        assertEquals("bbb", checksums.get("00000002.tif"));
+        assertEquals("ccc", checksums.get("\u00dcbersicht.tif"));
+        assertEquals(Arrays.asList("00000001.tif", "00000002.tif", "\u00dcbersicht.tif"),
+                Arrays.asList(checksums.keySet().toArray()));
+    }
+
+    @Test
+    public void testParseLargeFile() throws Exception {
+        // larger than the read buffer, so that lines are split between two reads
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 20000; i++) {
+            content.append(String.format("%040d  %08d.tif%n", i, i));
+        }
+        // a single line longer than the read buffer
+        char[] longName = new char[ChecksumVerifier.BUFFER_SIZE + 10];
+        Arrays.fill(longName, 'x');
+        content.append("fff  ").append(longName).append(".tif\n");
+        Path file = folder.newFile("master.sha1").toPath();
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> checksums = ChecksumIndex.parse(file);
+        assertEquals(20001, checksums.size());
+        assertEquals(String.format("%040d", 12345), checksums.get("00012345.tif"));
+        assertEquals("fff", checksums.get(new String(longName) + ".tif"));
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        Path master = folder.newFile("master.sha1").toPath();
+        Files.write(master, "aaa  00000001.tif\n".getBytes(StandardCharsets.UTF_8));
+        Path media = folder.newFile("media.sha1").toPath();
+        Files.write(media, "bbb  00000001.jpg\n".getBytes(StandardCharsets.UTF_8));
+
+        ChecksumIndex index = ChecksumIndex.read(Arrays.asList(master, media), ".sha1", Collections.singleton("master"));
+        assertEquals(master, index.getChecksumFile("master"));
+        assertEquals("aaa", index.getChecksums("master").get("00000001.tif"));
+        assertEquals("aaa", index.getChecksumsByBaseName("master").get("00000001"));
+        // not a configured image folder
+        assertNull(index.getChecksumFile("media"));
+        assertNull(index.getChecksums("media"));
+    }
+
+}
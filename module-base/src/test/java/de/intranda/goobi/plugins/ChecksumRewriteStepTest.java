@@ -0,0 +1,39 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChecksumRewriteStepTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBasename() {
+        assertEquals("00000001", ChecksumRewriteStep.getBasename("file:///opt/digiverso/export/abc/00000001.tif"));
+        assertEquals("00000001", ChecksumRewriteStep.getBasename("00000001.jpg"));
+        assertEquals("00000001", ChecksumRewriteStep.getBasename("00000001"));
+    }
+
+    @Test
+    public void testReadChecksumFile() throws IOException {
+        Path checksumFile = folder.getRoot().toPath().resolve("master.sha1");
+        Files.write(checksumFile, Arrays.asList("# comment", "", "da39a3ee5e6b4b0d3255bfef95601890afd80709  00000001.tif",
+                "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12  00000002.tif"), StandardCharsets.UTF_8);
+        Map<String, String> checksums = ExportPackageStepPlugin.readChecksumFile(checksumFile);
+        assertEquals(2, checksums.size());
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", checksums.get("00000001"));
+        assertEquals("2fd4e1c67a2d28fced849ee1bb76e7391b93eb12", checksums.get("00000002"));
+    }
+
+}
@@ -0,0 +1,58 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChecksumVerifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDigestAlgorithm() {
+        assertEquals("SHA-1", ChecksumVerifier.getDigestAlgorithm("SHA-1"));
+        assertEquals("SHA-1", ChecksumVerifier.getDigestAlgorithm("sha1"));
+        assertEquals("SHA-256", ChecksumVerifier.getDigestAlgorithm("SHA256"));
+        assertEquals("MD5", ChecksumVerifier.getDigestAlgorithm("md5"));
+    }
+
+    @Test
+    public void testReadManifest() throws IOException {
+        Path checksumFile = folder.getRoot().toPath().resolve("master.sha1");
+        Files.write(checksumFile, Arrays.asList("# comment", "da39a3ee5e6b4b0d3255bfef95601890afd80709  file 1.tif",
+                "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12 *00000002.tif"), StandardCharsets.UTF_8);
+        Map<String, String> manifest = ChecksumVerifier.readManifest(checksumFile);
+        assertEquals(2, manifest.size());
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", manifest.get("file 1.tif"));
+        assertEquals("2fd4e1c67a2d28fced849ee1bb76e7391b93eb12", manifest.get("00000002.tif"));
+    }
+
+    @Test
+    public void testVerify() throws Exception {
+        Path images = folder.newFolder("images").toPath();
+        Files.write(images.resolve("00000001.tif"), new byte[0]);
+        Files.write(images.resolve("00000002.tif"), "changed".getBytes(StandardCharsets.UTF_8));
+        Path checksumFile = folder.getRoot().toPath().resolve("images.sha1");
+        Files.write(checksumFile, Arrays.asList("da39a3ee5e6b4b0d3255bfef95601890afd80709  00000001.tif",
+                "da39a3ee5e6b4b0d3255bfef95601890afd80709  00000002.tif",
+                "da39a3ee5e6b4b0d3255bfef95601890afd80709  00000003.tif"), StandardCharsets.UTF_8);
+
+        List<String> mismatches = new ChecksumVerifier("SHA-1", 2).verify(checksumFile, images);
+        assertEquals(2, mismatches.size());
+        assertTrue(mismatches.contains("00000002.tif"));
+        assertTrue(mismatches.contains("00000003.tif"));
+    }
+
+}
@@ -0,0 +1,89 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentStoreTest {
+
+    // SHA-1 of "abc"
+    private static final String CHECKSUM = "a9993e364706816aba3e25717850c26c9cd0d89d";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAdd() throws Exception {
+        Path source = folder.getRoot().toPath().resolve("00000001.tif");
+        Files.write(source, "abc".getBytes(StandardCharsets.UTF_8));
+        ContentStore store = new ContentStore(folder.getRoot().toPath().resolve("store"), "SHA-1");
+
+        Path stored = store.add(source, CHECKSUM.toUpperCase());
+        assertEquals(folder.getRoot().toPath().resolve("store/sha1/a9/" + CHECKSUM), stored);
+        assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(stored));
+        assertFalse(Files.getPosixFilePermissions(stored).contains(PosixFilePermission.OWNER_WRITE));
+        assertEquals(1, store.getStoredFiles());
+
+        // the same content from another file is not copied again
+        Path other = folder.getRoot().toPath().resolve("00000002.tif");
+        Files.write(other, "abc".getBytes(StandardCharsets.UTF_8));
+        assertEquals(stored, store.add(other, CHECKSUM));
+        assertEquals(1, store.getStoredFiles());
+        assertEquals(1, store.getReusedFiles());
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        Path source = folder.getRoot().toPath().resolve("00000001.tif");
+        Files.write(source, "abd".getBytes(StandardCharsets.UTF_8));
+        ContentStore store = new ContentStore(folder.getRoot().toPath().resolve("store"), "SHA-1");
+        try {
+            store.add(source, CHECKSUM);
+            fail("the file does not match the checksum");
+        } catch (IOException e) {
+            // expected
+        }
+        assertFalse(Files.exists(store.getFile(CHECKSUM)));
+        // no temporary files are left behind
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath().resolve("store/tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        Path images = folder.newFolder("images").toPath();
+        Files.write(images.resolve("00000001.tif"), "abc".getBytes(StandardCharsets.UTF_8));
+        ContentStore store = new ContentStore(folder.getRoot().toPath().resolve("store"), "SHA-1");
+
+        for (String target : new String[] { "archive", "presentation" }) {
+            ExportPlan plan = new ExportPlan();
+            plan.addFolder("images", images, folder.getRoot().toPath().resolve(target), "SHA-1");
+            plan.getEntries().get(0).setDigest(CHECKSUM);
+            ParallelExporter exporter = new ParallelExporter(1);
+            exporter.setContentStore(store);
+            ParallelExporter.Result result = exporter.execute(plan);
+            assertFalse(result.hasErrors());
+            assertEquals(CHECKSUM, result.getChecksums("images").get("00000001.tif"));
+        }
+        assertEquals(1, store.getStoredFiles());
+        // both packages share the data of the stored file
+        Path stored = store.getFile(CHECKSUM);
+        assertTrue(Files.isSameFile(stored, folder.getRoot().toPath().resolve("archive/00000001.tif")));
+        assertTrue(Files.isSameFile(stored, folder.getRoot().toPath().resolve("presentation/00000001.tif")));
+    }
+
+}
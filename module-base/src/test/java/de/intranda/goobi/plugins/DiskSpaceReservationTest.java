@@ -0,0 +1,73 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskSpaceReservationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMissingFolder() throws Exception {
+        Path missing = folder.getRoot().toPath().resolve("a/b/c");
+        assertEquals(Files.getFileStore(folder.getRoot().toPath()), DiskSpaceReservation.getFileStore(missing));
+    }
+
+    @Test
+    public void testReservation() throws Exception {
+        FileStore store = DiskSpaceReservation.getFileStore(folder.getRoot().toPath());
+        long available = DiskSpaceReservation.getAvailable(store);
+        assertTrue(available > 1000);
+
+        assertNull(DiskSpaceReservation.reserve(store, Long.MAX_VALUE / 2, 0));
+        // the minimum free space is kept in addition to the reservation
+        assertNull(DiskSpaceReservation.reserve(store, 1000, available));
+
+        DiskSpaceReservation first = DiskSpaceReservation.reserve(store, available / 2, 0);
+        assertNotNull(first);
+        // the reserved space is no longer available for other exports
+        assertTrue(DiskSpaceReservation.getAvailable(store) <= available - available / 2);
+        assertNull(DiskSpaceReservation.reserve(store, available - available / 4, 0));
+
+        first.close();
+        first.close();
+        DiskSpaceReservation second = DiskSpaceReservation.reserve(store, available / 2, 0);
+        assertNotNull(second);
+        second.close();
+    }
+
+    @Test
+    public void testWrittenBytesReleased() throws Exception {
+        FileStore store = DiskSpaceReservation.getFileStore(folder.getRoot().toPath());
+        long available = DiskSpaceReservation.getAvailable(store);
+
+        DiskSpaceReservation first = DiskSpaceReservation.reserve(store, available / 2, 0);
+        assertNotNull(first);
+        assertNull(DiskSpaceReservation.reserve(store, available - available / 4, 0));
+
+        // written data reduces the free space itself, so it is no longer reserved
+        first.written(available / 4);
+        assertEquals(available / 2 - available / 4, first.getRemaining());
+        first.written(available);
+        assertEquals(0, first.getRemaining());
+        DiskSpaceReservation second = DiskSpaceReservation.reserve(store, available / 2, 0);
+        assertNotNull(second);
+
+        // only the remaining part is released
+        first.close();
+        assertTrue(DiskSpaceReservation.getAvailable(store) <= available - available / 2);
+        second.close();
+    }
+
+}
@@ -0,0 +1,71 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DocumentTasksTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFailedTaskStopsArchive() throws Exception {
+        Path metsFile = folder.getRoot().toPath().resolve("PPN123_mets.xml");
+        Files.write(metsFile, "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\">".getBytes(StandardCharsets.UTF_8));
+        Path archive = folder.getRoot().toPath().resolve("PPN123.zip");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        DocumentTasks tasks = new DocumentTasks(executor, false);
+
+        tasks.submit(() -> {
+            Thread.sleep(100);
+            return null;
+        });
+        MetsDocumentTask metsTask = new MetsDocumentTask(metsFile, new ExportStatistics());
+        metsTask.setStreaming(true);
+        metsTask.setHrefSearchValue("PPN123");
+        metsTask.setHrefReplacement("PPN123_20201112");
+        tasks.submit(metsTask);
+
+        // the same order as in the export: all tasks are awaited before the archive is written
+        try {
+            tasks.await();
+            Files.write(archive, new byte[0]);
+            fail("The broken METS file was not reported");
+        } catch (XMLStreamException e) {
+            // expected
+        } finally {
+            tasks.stop();
+        }
+        assertFalse(Files.exists(archive));
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test
+    public void testSharedExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DocumentTasks tasks = new DocumentTasks(executor, true);
+            tasks.submit(() -> null);
+            tasks.await();
+            tasks.stop();
+            // the executor of a batch export is used by the next process
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExportEstimateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEstimate() throws Exception {
+        Path images = folder.newFolder("images").toPath();
+        Files.createDirectories(images.resolve("empty"));
+        for (int i = 1; i <= 20; i++) {
+            Files.write(images.resolve(String.format("%08d.tif", i)), new byte[i * 100]);
+        }
+        Path destination = folder.getRoot().toPath().resolve("export");
+        ExportPlan plan = new ExportPlan();
+        plan.addFolder("images", images, destination.resolve("images"), null);
+
+        for (int threads : new int[] { 1, 4 }) {
+            ExportEstimate estimate = ExportEstimate.calculate(plan, threads, null);
+            assertEquals(20, estimate.getFiles());
+            assertEquals(21000, estimate.getBytes());
+            assertEquals(21000, estimate.getBytesToWrite());
+            assertEquals(2000, estimate.getSize(plan.getEntries().stream()
+                    .filter(entry -> entry.getRelativeName().equals("00000020.tif"))
+                    .findFirst()
+                    .get()));
+        }
+
+        // files that were exported before are replaced
+        Files.createDirectories(destination.resolve("images"));
+        Files.write(destination.resolve("images/00000020.tif"), new byte[2000]);
+        Files.write(destination.resolve("images/00000019.tif"), new byte[100]);
+        ExportEstimate estimate = ExportEstimate.calculate(plan, 4, null);
+        assertEquals(21000, estimate.getBytes());
+        assertEquals(21000 - 2000 - 100, estimate.getBytesToWrite());
+
+        ExportPlan part = plan.filter(entry -> entry.getRelativeName().startsWith("0000000"));
+        assertEquals(9, estimate.getFiles(part));
+        assertEquals(4500, estimate.getBytes(part));
+    }
+
+    @Test
+    public void testHardLinks() throws Exception {
+        Path images = folder.newFolder("images").toPath();
+        Files.write(images.resolve("00000001.tif"), new byte[1000]);
+        Path destination = folder.getRoot().toPath().resolve("export");
+        ExportPlan plan = new ExportPlan();
+        plan.addFolder("images", images, destination, null, TransferStrategy.HARDLINK);
+
+        ExportEstimate estimate = ExportEstimate.calculate(plan, 1, DiskSpaceReservation.getFileStore(destination));
+        assertEquals(1000, estimate.getBytes());
+        assertEquals(0, estimate.getBytesToWrite());
+    }
+
+}
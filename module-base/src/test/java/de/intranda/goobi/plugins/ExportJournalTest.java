@@ -0,0 +1,116 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExportJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResume() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Files.write(source, "page 1".getBytes(StandardCharsets.UTF_8));
+        Path file = folder.getRoot().toPath().resolve(ExportJournal.FILE_NAME);
+        Path destination = folder.getRoot().toPath().resolve("export");
+
+        ExportJournal journal = ExportJournal.open(file, "1\t/export", destination, "SHA-1");
+        assertFalse(journal.isResumed());
+        journal.fileExported("master/00000001.tif", source, "abc");
+        journal.complete(ExportStatistics.COPY);
+        journal.close();
+        // a line cut off by a crash
+        Files.write(file, "file\tdef\t6".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        journal = ExportJournal.open(file, "1\t/export", destination, "SHA-1");
+        assertTrue(journal.isResumed());
+        assertTrue(journal.isCompleted(ExportStatistics.COPY));
+        assertFalse(journal.isCompleted(ExportStatistics.VALIDATION));
+        assertEquals("abc", journal.getExportedFiles().get("master/00000001.tif").getDigest());
+        assertEquals(1, journal.getExportedFiles().getNames().size());
+        journal.complete(ExportStatistics.VALIDATION);
+        journal.close();
+
+        journal = ExportJournal.open(file, "1\t/export", destination, "SHA-1");
+        assertTrue(journal.isCompleted(ExportStatistics.VALIDATION));
+        journal.delete();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testReplaceJournal() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Path file = folder.getRoot().toPath().resolve(ExportJournal.FILE_NAME);
+        Path destination = folder.getRoot().toPath().resolve("export");
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/export", destination, "SHA-1")) {
+            journal.fileExported("master/00000001.tif", source, "abc");
+        }
+        // the journal written again by a crashed export
+        Path temp = folder.getRoot().toPath().resolve(ExportJournal.FILE_NAME + ".tmp");
+        Files.write(temp, "destination".getBytes(StandardCharsets.UTF_8));
+
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/export", destination, "SHA-1")) {
+            assertTrue(journal.isResumed());
+            // lines are appended to the new journal
+            journal.complete(ExportStatistics.COPY);
+        }
+        assertFalse(Files.exists(temp));
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/export", destination, "SHA-1")) {
+            assertEquals("abc", journal.getExportedFiles().get("master/00000001.tif").getDigest());
+            assertTrue(journal.isCompleted(ExportStatistics.COPY));
+        }
+    }
+
+    @Test
+    public void testResumeIntoRecordedDestination() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Path file = folder.getRoot().toPath().resolve(ExportJournal.FILE_NAME);
+        Path first = folder.getRoot().toPath().resolve("PPN123_20201112_083249");
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/export\t{processtitle}_{timestamp}", first, "SHA-1")) {
+            assertEquals(first, journal.getDestination());
+            journal.fileExported("master/00000001.tif", source, null);
+        }
+        // the second run resolves another timestamp, but continues in the folder of the interrupted export
+        Path second = folder.getRoot().toPath().resolve("PPN123_20201112_091501");
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/export\t{processtitle}_{timestamp}", second, "SHA-1")) {
+            assertTrue(journal.isResumed());
+            assertEquals(first, journal.getDestination());
+            assertEquals(1, journal.getExportedFiles().getNames().size());
+        }
+        try (ExportJournal journal = ExportJournal.open(file, "2\t/export\t{processtitle}_{timestamp}", second, "SHA-1")) {
+            assertFalse(journal.isResumed());
+            assertEquals(second, journal.getDestination());
+        }
+    }
+
+    @Test
+    public void testOtherDestination() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Path file = folder.getRoot().toPath().resolve(ExportJournal.FILE_NAME);
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/a", folder.getRoot().toPath().resolve("a"), "SHA-1")) {
+            journal.fileExported("master/00000001.tif", source, null);
+            journal.complete(ExportStatistics.COPY);
+        }
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/b", folder.getRoot().toPath().resolve("b"), "SHA-1")) {
+            assertFalse(journal.isResumed());
+            assertFalse(journal.isCompleted(ExportStatistics.COPY));
+            assertNull(journal.getExportedFiles().get("master/00000001.tif"));
+        }
+        try (ExportJournal journal = ExportJournal.open(file, "1\t/b", folder.getRoot().toPath().resolve("b"), "MD5")) {
+            assertFalse(journal.isResumed());
+        }
+    }
+
+}
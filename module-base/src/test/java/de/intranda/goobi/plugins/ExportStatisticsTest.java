@@ -0,0 +1,47 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class ExportStatisticsTest {
+
+    @Test
+    public void testPhasesAndDetails() {
+        ExportStatistics statistics = new ExportStatistics();
+        statistics.record(ExportStatistics.METS_EXPORT, 500_000_000L, 2048, 1);
+        statistics.record(ExportStatistics.COPY, 2_000_000_000L, 0, 0);
+        statistics.recordDetail(ExportStatistics.COPY, "master", 1_000_000_000L, 3L * 1024 * 1024, 2);
+        statistics.recordDetail(ExportStatistics.COPY, "ocr", 10_000_000L, 1024 * 1024, 2);
+
+        List<ExportStatistics.Phase> phases = statistics.getPhases();
+        assertEquals(2, phases.size());
+        ExportStatistics.Phase copy = phases.get(1);
+        assertEquals(2_000_000_000L, copy.getNanos());
+        assertEquals(4L * 1024 * 1024, copy.getBytes());
+        assertEquals(4, copy.getFiles());
+        assertEquals(2, copy.getDetails().size());
+
+        assertEquals("Export statistics: mets export 0.5 s, 1 files, 2.0 KB, 4.0 KB/s | copy 2.0 s, 4 files, 4.0 MB, 2.0 MB/s "
+                + "(master: 2 files, 3.0 MB; ocr: 2 files, 1.0 MB)", statistics.getSummary());
+    }
+
+    @Test
+    public void testMetrics() {
+        ExportMetrics metrics = new ExportMetrics();
+        ExportStatistics statistics = new ExportStatistics();
+        statistics.start(ExportStatistics.TOTAL).stop(100, 2);
+        metrics.add(statistics, true);
+        metrics.add(statistics, false);
+        assertEquals(2, metrics.getExportCount());
+        assertEquals(1, metrics.getFailedExportCount());
+        assertEquals(2, metrics.getPhaseCount(ExportStatistics.TOTAL));
+        assertEquals(200, metrics.getPhaseBytes(ExportStatistics.TOTAL));
+        assertEquals(0, metrics.getPhaseFiles("unknown"));
+        assertTrue(metrics.getLastSummary().startsWith("Export statistics: total"));
+    }
+
+}
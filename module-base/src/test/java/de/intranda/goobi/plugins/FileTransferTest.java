@@ -0,0 +1,80 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileTransferTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStrategies() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Files.write(source, "abc".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1_500_000_000_000L));
+        Path target = folder.getRoot().toPath().resolve("export/master/00000001.tif");
+        FileTransfer transfer = new FileTransfer();
+
+        assertEquals(TransferStrategy.ZERO_COPY, transfer.transfer(source, target, TransferStrategy.ZERO_COPY));
+        assertFalse(Files.isSameFile(source, target));
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+        assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(target));
+
+        // the existing target is replaced
+        assertEquals(TransferStrategy.HARDLINK, transfer.transfer(source, target, TransferStrategy.HARDLINK));
+        assertTrue(Files.isSameFile(source, target));
+
+        // a reflink is not supported on every file system, but the file gets transferred anyway
+        TransferStrategy used = transfer.transfer(source, target, TransferStrategy.REFLINK);
+        assertNotEquals(TransferStrategy.HARDLINK, used);
+        assertFalse(Files.isSameFile(source, target));
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+        assertEquals(1, transfer.getUsage(TransferStrategy.HARDLINK));
+    }
+
+    @Test
+    public void testLinkIsNotOverwritten() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Files.write(source, "abc".getBytes(StandardCharsets.UTF_8));
+        Path target = folder.getRoot().toPath().resolve("00000001_export.tif");
+        new FileTransfer().transfer(source, target, TransferStrategy.HARDLINK);
+
+        // copying again must not write through the link into the source
+        Files.write(source.resolveSibling("00000002.tif"), "other".getBytes(StandardCharsets.UTF_8));
+        new HashingCopier("SHA-1").copyFile(source.resolveSibling("00000002.tif"), target);
+        assertEquals("abc", new String(Files.readAllBytes(source), StandardCharsets.UTF_8));
+        assertEquals("other", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFindCommand() {
+        Path cp = FileTransfer.findCommand("cp");
+        assertNotNull(cp);
+        assertTrue(Files.isExecutable(cp));
+        assertNull(FileTransfer.findCommand("export-package-missing-command"));
+    }
+
+    @Test
+    public void testConfiguredNames() {
+        assertEquals(TransferStrategy.ZERO_COPY, TransferStrategy.getByName(" ZeroCopy ", TransferStrategy.COPY));
+        assertEquals(TransferStrategy.COPY, TransferStrategy.getByName("unknown", TransferStrategy.COPY));
+        assertEquals(TransferStrategy.HARDLINK, TransferStrategy.getByName(null, TransferStrategy.HARDLINK));
+        assertEquals(TransferStrategy.REFLINK, TransferStrategy.HARDLINK.getFallback());
+    }
+
+}
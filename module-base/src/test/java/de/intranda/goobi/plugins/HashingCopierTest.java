@@ -0,0 +1,40 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HashingCopierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCopyAndManifest() throws Exception {
+        Path source = folder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("sub"));
+        Files.write(source.resolve("00000001.tif"), new byte[0]);
+        Files.write(source.resolve("sub/00000002.tif"), "abc".getBytes(StandardCharsets.UTF_8));
+        Path target = folder.getRoot().toPath().resolve("target");
+
+        Map<String, String> checksums = new HashingCopier("SHA-1").copyDirectory(source, target);
+        assertEquals(2, checksums.size());
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", checksums.get("00000001.tif"));
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksums.get("sub/00000002.tif"));
+        assertEquals("abc", new String(Files.readAllBytes(target.resolve("sub/00000002.tif")), StandardCharsets.UTF_8));
+
+        Path manifest = folder.getRoot().toPath().resolve("target.sha1");
+        HashingCopier.writeManifest(checksums, manifest);
+        assertEquals(checksums, ChecksumVerifier.readManifest(manifest));
+        assertTrue(new ChecksumVerifier("SHA-1", 1).verify(manifest, target).isEmpty());
+    }
+
+}
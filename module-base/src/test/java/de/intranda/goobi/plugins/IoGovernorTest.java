@@ -0,0 +1,133 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IoGovernorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBandwidth() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("00000001.tif");
+        Files.write(file, new byte[3 * 1024 * 1024]);
+        IoGovernor governor = new IoGovernor();
+        governor.setBandwidth(10 * 1024 * 1024);
+
+        long start = System.nanoTime();
+        byte[] buffer = new byte[64 * 1024];
+        long read = 0;
+        try (InputStream in = governor.newInputStream(file)) {
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                read += length;
+            }
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(3 * 1024 * 1024, read);
+        // the bucket starts empty, so 3 MB take about 300 ms
+        assertTrue(millis >= 250);
+        assertTrue(governor.getThrottledNanos() > 0);
+    }
+
+    @Test
+    public void testUnlimited() throws Exception {
+        Path source = folder.getRoot().toPath().resolve("source.tif");
+        Path target = folder.getRoot().toPath().resolve("target.tif");
+        Files.write(source, new byte[1024 * 1024]);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1_600_000_000_000L));
+        IoGovernor governor = new IoGovernor();
+        governor.copy(source, target);
+        assertEquals(1024 * 1024, Files.size(target));
+        assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(target));
+        assertEquals(0, governor.getThrottledNanos());
+    }
+
+    @Test
+    public void testThrottledCopy() throws Exception {
+        Path source = folder.getRoot().toPath().resolve("source.tif");
+        Path target = folder.getRoot().toPath().resolve("target.tif");
+        Files.write(source, new byte[1024 * 1024]);
+        IoGovernor governor = new IoGovernor();
+        governor.setBandwidth(100 * 1024 * 1024);
+        governor.setMaxOpenFiles(1);
+        governor.copy(source, target);
+        // the open file was released, so a second copy does not block
+        governor.copy(source, target);
+        assertEquals(1024 * 1024, Files.size(target));
+        assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(target));
+        assertEquals(0, governor.getOpenFileWaitNanos());
+    }
+
+    @Test
+    public void testThrottledCopyOverHardLink() throws Exception {
+        Path source = folder.getRoot().toPath().resolve("source.tif");
+        Path master = folder.getRoot().toPath().resolve("master.tif");
+        Path target = folder.getRoot().toPath().resolve("target.tif");
+        byte[] data = new byte[256 * 1024];
+        data[0] = 1;
+        byte[] masterData = new byte[1024];
+        masterData[0] = 2;
+        Files.write(source, data);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1_600_000_000_000L));
+        Files.write(master, masterData);
+        // a previous export linked the master image into the package
+        Files.createLink(target, master);
+
+        IoGovernor governor = new IoGovernor();
+        governor.setBandwidth(100 * 1024 * 1024);
+        governor.copy(source, target);
+
+        assertArrayEquals(masterData, Files.readAllBytes(master));
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertFalse(Files.isSameFile(master, target));
+        assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(target));
+        // no temporary file is left behind
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(3, files.count());
+        }
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        IoGovernor.Limit limit = new IoGovernor.Limit();
+        limit.setMax(1);
+        limit.acquire();
+        Thread waiting = new Thread(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+        waiting.join(200);
+        assertTrue(waiting.isAlive());
+        assertEquals(1, limit.getUsed());
+
+        limit.release();
+        waiting.join(5000);
+        assertEquals(1, limit.getUsed());
+        assertTrue(limit.getWaitNanos() > 0);
+
+        // raising the limit at runtime
+        limit.setMax(0);
+        limit.acquire();
+        assertEquals(2, limit.getUsed());
+    }
+
+}
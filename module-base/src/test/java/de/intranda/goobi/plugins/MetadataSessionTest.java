@@ -0,0 +1,63 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.goobi.beans.Process;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ugh.dl.Fileformat;
+
+public class MetadataSessionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadOnce() throws Exception {
+        Path metaFile = folder.newFile("meta.xml").toPath();
+        Files.write(metaFile, "<mets/>".getBytes(StandardCharsets.UTF_8));
+        CountingProcess process = new CountingProcess(metaFile);
+
+        MetadataSession session = new MetadataSession(process, null);
+        Fileformat fileformat = session.getFileformat();
+        assertSame(fileformat, session.getFileformat());
+        assertEquals(1, process.reads);
+
+        byte[] content = session.getContent();
+        // the content is kept, even if the file changes during the export
+        Files.write(metaFile, "<changed/>".getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals("<mets/>".getBytes(StandardCharsets.UTF_8), session.getContent());
+        assertSame(content, session.getContent());
+    }
+
+    private static class CountingProcess extends Process {
+        private final Path metaFile;
+        private int reads;
+
+        private CountingProcess(Path metaFile) {
+            this.metaFile = metaFile;
+        }
+
+        @Override
+        public Fileformat readMetadataFile() {
+            reads++;
+            return (Fileformat) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Fileformat.class },
+                    (proxy, method, args) -> null);
+        }
+
+        @Override
+        public String getMetadataFilePath() {
+            return metaFile.toString();
+        }
+    }
+
+}
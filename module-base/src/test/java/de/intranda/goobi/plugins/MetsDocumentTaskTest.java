@@ -0,0 +1,108 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetsDocumentTaskTest {
+
+    private static final String METS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n"
+            + "  <mets:fileSec>\n"
+            + "    <mets:fileGrp USE=\"PRESENTATION\">\n"
+            + "      <mets:file ID=\"FILE_0001\" MIMETYPE=\"image/tiff\">\n"
+            + "        <mets:FLocat LOCTYPE=\"URL\" xlink:href=\"file:///export/PPN123/00000001.tif\" />\n"
+            + "      </mets:file>\n"
+            + "    </mets:fileGrp>\n"
+            + "  </mets:fileSec>\n"
+            + "</mets:mets>\n";
+
+    // lists the process title and the file references of the METS file
+    private static final String XSL = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\""
+            + " xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+            + "<xsl:output method=\"text\" />"
+            + "<xsl:param name=\"processTitle\" />"
+            + "<xsl:template match=\"/\">"
+            + "<xsl:value-of select=\"$processTitle\" />"
+            + "<xsl:for-each select=\"//mets:FLocat\">"
+            + "<xsl:text> </xsl:text><xsl:value-of select=\"@xlink:href\" />"
+            + "</xsl:for-each>"
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTransformRewrittenDocument() throws Exception {
+        testTransformRewrittenDocument(false);
+    }
+
+    @Test
+    public void testTransformStreamingRewrite() throws Exception {
+        testTransformRewrittenDocument(true);
+    }
+
+    private void testTransformRewrittenDocument(boolean streaming) throws Exception {
+        Path metsFile = folder.getRoot().toPath().resolve("PPN123_mets.xml");
+        Path xsl = folder.getRoot().toPath().resolve("export_mets.xsl");
+        Path result = folder.getRoot().toPath().resolve("xslt_result_mets.xml");
+        Files.write(metsFile, METS.getBytes(StandardCharsets.UTF_8));
+        Files.write(xsl, XSL.getBytes(StandardCharsets.UTF_8));
+        String original = transform(xsl, metsFile);
+
+        MetsDocumentTask task = new MetsDocumentTask(metsFile, new ExportStatistics());
+        task.setStreaming(streaming);
+        task.setHrefSearchValue("PPN123");
+        task.setHrefReplacement("PPN123_20201112");
+        task.setTransformationXsl(xsl);
+        task.setTransformationResult(result);
+        task.setProcessTitle("PPN123");
+        task.call();
+
+        String transformed = new String(Files.readAllBytes(result), StandardCharsets.UTF_8);
+        assertEquals("PPN123 file:///export/PPN123_20201112/00000001.tif", transformed);
+        // the transformation sees the rewritten METS file, not the file as it was exported
+        assertEquals(transform(xsl, metsFile), transformed);
+        assertFalse(original.equals(transformed));
+    }
+
+    @Test
+    public void testWithoutTransformation() throws Exception {
+        Path metsFile = folder.getRoot().toPath().resolve("PPN123_mets.xml");
+        Files.write(metsFile, METS.getBytes(StandardCharsets.UTF_8));
+
+        MetsDocumentTask task = new MetsDocumentTask(metsFile, new ExportStatistics());
+        task.setHrefSearchValue("PPN123");
+        task.setHrefReplacement("PPN123_20201112");
+        task.call();
+
+        String rewritten = new String(Files.readAllBytes(metsFile), StandardCharsets.UTF_8);
+        assertTrue(rewritten.contains("file:///export/PPN123_20201112/00000001.tif"));
+        try (java.util.stream.Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static String transform(Path xsl, Path metsFile) throws Exception {
+        Transformer transformer = XsltTemplatesCache.getInstance().getTemplates(xsl).newTransformer();
+        transformer.setParameter("processTitle", "PPN123");
+        StringWriter out = new StringWriter();
+        transformer.transform(new StreamSource(metsFile.toFile()), new StreamResult(out));
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,69 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PackageManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadWrite() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Files.write(source, "abc".getBytes(StandardCharsets.UTF_8));
+        Path target = folder.newFolder("master").toPath().resolve("00000001.tif");
+        Files.copy(source, target);
+
+        PackageManifest manifest = new PackageManifest("SHA-1");
+        manifest.add("master/00000001.tif", source, "a9993e364706816aba3e25717850c26c9cd0d89d");
+        manifest.add("ocr/00000001.xml", source, null);
+        Path file = folder.getRoot().toPath().resolve(PackageManifest.FILE_NAME);
+        manifest.write(file);
+
+        PackageManifest read = PackageManifest.read(file, "SHA-1");
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", read.get("master/00000001.tif").getDigest());
+        assertEquals(3, read.get("master/00000001.tif").getSize());
+        assertNull(read.get("ocr/00000001.xml").getDigest());
+        assertTrue(read.isUnchanged("master/00000001.tif", source, target));
+        assertEquals(Collections.singletonList("ocr/00000001.xml"),
+                read.getRemovedNames(new HashSet<>(Arrays.asList("master/00000001.tif"))));
+
+        // digests of another checksum type can't be used
+        assertTrue(PackageManifest.read(file, "MD5").isEmpty());
+        assertTrue(PackageManifest.read(folder.getRoot().toPath().resolve("missing"), "SHA-1").isEmpty());
+    }
+
+    @Test
+    public void testChangedSource() throws Exception {
+        Path source = folder.newFile("00000001.tif").toPath();
+        Files.write(source, "abc".getBytes(StandardCharsets.UTF_8));
+        Path target = folder.getRoot().toPath().resolve("copy.tif");
+        Files.copy(source, target);
+        PackageManifest manifest = new PackageManifest("SHA-1");
+        manifest.add("00000001.tif", source, null);
+
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 2000));
+        assertFalse(manifest.isUnchanged("00000001.tif", source, target));
+        assertFalse(manifest.isUnchanged("00000002.tif", source, target));
+        manifest.add("00000001.tif", source, null);
+        assertTrue(manifest.isUnchanged("00000001.tif", source, target));
+        Files.delete(target);
+        assertFalse(manifest.isUnchanged("00000001.tif", source, target));
+    }
+
+}
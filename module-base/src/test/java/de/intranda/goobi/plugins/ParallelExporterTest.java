@@ -0,0 +1,90 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testExportPlan() throws Exception {
+        Path images = folder.newFolder("images").toPath();
+        Files.createDirectories(images.resolve("empty"));
+        for (int i = 1; i <= 20; i++) {
+            Files.write(images.resolve(String.format("%08d.tif", i)), ("page " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        Path destination = folder.getRoot().toPath().resolve("export");
+
+        ExportPlan plan = new ExportPlan();
+        plan.addFolder("images", images, destination.resolve("images"), "SHA-1");
+        plan.addFile("meta", folder.getRoot().toPath().resolve("missing.xml"), destination.resolve("meta.xml"));
+        assertEquals(22, plan.getEntries().size());
+        assertEquals(21, plan.getEntries("images").size());
+
+        ParallelExporter.Result result = new ParallelExporter(4).execute(plan);
+        assertTrue(Files.isDirectory(destination.resolve("images/empty")));
+        assertTrue(Files.exists(destination.resolve("images/00000020.tif")));
+        assertEquals(20, result.getChecksums("images").size());
+        assertTrue(result.getChecksums("meta").isEmpty());
+        assertTrue(result.hasErrors());
+        assertEquals(1, result.getErrors().get("meta").size());
+        assertFalse(result.getErrors().containsKey("images"));
+    }
+
+    @Test
+    public void testSharedExecutor() throws Exception {
+        Path images = folder.newFolder("images").toPath();
+        for (int i = 1; i <= 10; i++) {
+            Files.write(images.resolve(String.format("%08d.tif", i)), ("page " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (String name : new String[] { "first", "second" }) {
+                ExportPlan plan = new ExportPlan();
+                plan.addFolder("images", images, folder.getRoot().toPath().resolve(name), "SHA-1");
+                ParallelExporter.Result result = new ParallelExporter(executor, null).execute(plan);
+                assertFalse(result.hasErrors());
+                assertEquals(10, result.getChecksums("images").size());
+            }
+            // the shared pool is still usable for the next export
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testProgress() throws Exception {
+        Path images = folder.newFolder("images").toPath();
+        for (int i = 1; i <= 10; i++) {
+            Files.write(images.resolve(String.format("%08d.tif", i)), new byte[1000]);
+        }
+        ExportPlan plan = new ExportPlan();
+        plan.addFolder("images", images, folder.getRoot().toPath().resolve("export"), null);
+        ExportProgress progress = new ExportProgress("test");
+        progress.start(10, 10000);
+        assertEquals(0, progress.getPercent());
+
+        ParallelExporter exporter = new ParallelExporter(4);
+        exporter.setProgress(progress);
+        exporter.execute(plan);
+        assertEquals(10, progress.getFiles());
+        assertEquals(10000, progress.getBytes());
+        assertEquals(100, progress.getPercent());
+        assertTrue(progress.getSummary().startsWith("9.8 KB of 9.8 KB, 10 of 10 files (100 %)"));
+    }
+
+}
@@ -0,0 +1,47 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelHasherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHash() throws Exception {
+        Path images = folder.newFolder("master").toPath();
+        for (int i = 1; i <= 10; i++) {
+            Files.write(images.resolve(String.format("%08d.tif", i)), ("page " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.createDirectories(images.resolve("thumbs"));
+
+        ParallelHasher hasher = new ParallelHasher(Arrays.asList("SHA-1", "MD5", "SHA256"), 4);
+        Map<String, Map<String, String>> checksums = hasher.hash(images);
+        assertEquals(3, checksums.size());
+        Path first = images.resolve("00000001.tif");
+        assertEquals(10, checksums.get("SHA-1").size());
+        assertEquals(ChecksumVerifier.hash(first, "SHA-1"), checksums.get("SHA-1").get("00000001.tif"));
+        assertEquals(ChecksumVerifier.hash(first, "MD5"), checksums.get("MD5").get("00000001.tif"));
+        assertEquals(ChecksumVerifier.hash(first, "SHA-256"), checksums.get("SHA256").get("00000001.tif"));
+        assertEquals("00000001.tif", checksums.get("MD5").keySet().iterator().next());
+        assertEquals(10 * 6 + 1, hasher.getBytes());
+    }
+
+    @Test
+    public void testFileExtension() {
+        assertEquals(".sha1", ParallelHasher.getFileExtension("SHA-1"));
+        assertEquals(".sha256", ParallelHasher.getFileExtension("sha256"));
+        assertEquals(".md5", ParallelHasher.getFileExtension("MD5"));
+    }
+
+}
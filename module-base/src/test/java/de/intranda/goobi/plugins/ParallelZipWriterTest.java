@@ -0,0 +1,121 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelZipWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteInOrder() throws Exception {
+        Path sources = folder.newFolder("sources").toPath();
+        Random random = new Random(42);
+        byte[] large = new byte[ParallelZipWriter.MEMORY_LIMIT + 1024 * 1024];
+        random.nextBytes(large);
+        Files.write(sources.resolve("large.xml"), large);
+        Files.write(sources.resolve("00000001.tif"), "abc".getBytes(StandardCharsets.UTF_8));
+        Files.write(sources.resolve("empty.xml"), new byte[0]);
+        Path zipFile = folder.getRoot().toPath().resolve("PPN123.zip");
+
+        Map<String, String> checksums = new ConcurrentHashMap<>();
+        try (ParallelZipWriter zip = new ParallelZipWriter(zipFile, new ZipCompressionPolicy("tif", 6), 4)) {
+            zip.addDirectory("PPN123/empty");
+            zip.addFile("PPN123/large.xml", sources.resolve("large.xml"), null, null);
+            zip.addFile("PPN123/master/00000001.tif", sources.resolve("00000001.tif"), "SHA-1", c -> checksums.put("tif", c));
+            zip.addFile("PPN123/empty.xml", sources.resolve("empty.xml"), null, null);
+            for (int i = 0; i < 100; i++) {
+                zip.addFile("PPN123/alto/" + i + ".xml", ("<alto>" + i + "</alto>").getBytes(StandardCharsets.UTF_8));
+            }
+            zip.flush();
+            assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksums.get("tif"));
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(104, zip.size());
+            assertNotNull(zip.getEntry("PPN123/empty/"));
+            ZipEntry tif = zip.getEntry("PPN123/master/00000001.tif");
+            assertEquals(ZipEntry.STORED, tif.getMethod());
+            assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), zip.getInputStream(tif).readAllBytes());
+            assertArrayEquals(large, zip.getInputStream(zip.getEntry("PPN123/large.xml")).readAllBytes());
+            assertEquals(0, zip.getInputStream(zip.getEntry("PPN123/empty.xml")).readAllBytes().length);
+            assertArrayEquals("<alto>99</alto>".getBytes(StandardCharsets.UTF_8),
+                    zip.getInputStream(zip.getEntry("PPN123/alto/99.xml")).readAllBytes());
+        }
+        // no spill files are left behind
+        try (java.util.stream.Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void testStoredEntriesWithoutSpillFile() throws Exception {
+        Path sources = folder.newFolder("sources").toPath();
+        byte[] large = new byte[ParallelZipWriter.MEMORY_LIMIT + 1024 * 1024];
+        new Random(42).nextBytes(large);
+        Files.write(sources.resolve("00000001.tif"), large);
+        Files.write(sources.resolve("00000002.tif"), "abc".getBytes(StandardCharsets.UTF_8));
+        Path zipFile = folder.getRoot().toPath().resolve("PPN123.zip");
+
+        Map<String, String> checksums = new ConcurrentHashMap<>();
+        List<Long> spillFiles = new CopyOnWriteArrayList<>();
+        try (ParallelZipWriter zip = new ParallelZipWriter(zipFile, new ZipCompressionPolicy("tif", 6), 2)) {
+            for (String name : new String[] { "00000001.tif", "00000002.tif" }) {
+                zip.addFile("PPN123/" + name, sources.resolve(name), "SHA-1", checksum -> {
+                    checksums.put(name, checksum);
+                    spillFiles.add(countSpillFiles());
+                });
+            }
+        }
+
+        // stored files are copied straight into the archive
+        assertEquals(Arrays.asList(0L, 0L), spillFiles);
+        assertEquals(ChecksumVerifier.hash(sources.resolve("00000001.tif"), "SHA-1"), checksums.get("00000001.tif"));
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(ZipEntry.STORED, zip.getEntry("PPN123/00000001.tif").getMethod());
+            assertArrayEquals(large, zip.getInputStream(zip.getEntry("PPN123/00000001.tif")).readAllBytes());
+            assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8),
+                    zip.getInputStream(zip.getEntry("PPN123/00000002.tif")).readAllBytes());
+        }
+        assertEquals(0, countSpillFiles());
+    }
+
+    private long countSpillFiles() {
+        return folder.getRoot().listFiles((directory, name) -> name.endsWith(".spill")).length;
+    }
+
+    @Test
+    public void testZip64EntryCount() throws Exception {
+        Path zipFile = folder.getRoot().toPath().resolve("many.zip");
+        int entries = 70000;
+        try (ParallelZipWriter zip = new ParallelZipWriter(zipFile, new ZipCompressionPolicy("txt", -1), 4)) {
+            for (int i = 0; i < entries; i++) {
+                zip.addFile("many/" + i + ".txt", Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(entries, zip.size());
+            assertArrayEquals("69999".getBytes(StandardCharsets.UTF_8),
+                    zip.getInputStream(zip.getEntry("many/69999.txt")).readAllBytes());
+        }
+    }
+
+}
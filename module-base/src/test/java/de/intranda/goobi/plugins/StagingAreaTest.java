@@ -0,0 +1,116 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StagingAreaTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCommitFolder() throws Exception {
+        Path target = folder.getRoot().toPath();
+        Path destination = target.resolve("PPN123");
+        Files.createDirectories(destination);
+        Files.write(destination.resolve("old.xml"), new byte[10]);
+
+        try (StagingArea staging = StagingArea.open(target, "1", false)) {
+            Path staged = staging.resolve(destination);
+            Files.createDirectories(staged);
+            Files.write(staged.resolve("new.xml"), "new".getBytes(StandardCharsets.UTF_8));
+            // nothing is visible before the commit
+            assertTrue(Files.exists(destination.resolve("old.xml")));
+            assertFalse(Files.exists(destination.resolve("new.xml")));
+
+            staging.commit(destination);
+            assertFalse(Files.exists(destination.resolve("old.xml")));
+            assertArrayEquals("new".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(destination.resolve("new.xml")));
+        }
+        // only the package is left in the target
+        try (Stream<Path> files = Files.list(target)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testCommitFile() throws Exception {
+        Path target = folder.getRoot().toPath();
+        Path archive = target.resolve("PPN123.zip");
+        Files.write(archive, "old".getBytes(StandardCharsets.UTF_8));
+
+        try (StagingArea staging = StagingArea.open(target, "1", false)) {
+            Files.write(staging.resolve(archive), "new".getBytes(StandardCharsets.UTF_8));
+            staging.commit(archive);
+        }
+        assertArrayEquals("new".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(archive));
+        assertFalse(Files.exists(target.resolve(StagingArea.PREFIX + "1")));
+    }
+
+    @Test
+    public void testFailedExport() throws Exception {
+        Path target = folder.getRoot().toPath();
+        Path destination = target.resolve("PPN123");
+
+        // a failed export leaves nothing behind
+        try (StagingArea staging = StagingArea.open(target, "1", false)) {
+            Files.createDirectories(staging.resolve(destination));
+        }
+        assertFalse(Files.exists(target.resolve(StagingArea.PREFIX + "1")));
+        assertFalse(Files.exists(destination));
+
+        // a failed export that can be resumed keeps its files
+        try (StagingArea staging = StagingArea.open(target, "1", false)) {
+            staging.setResumable(true);
+            Files.createDirectories(staging.resolve(destination));
+            Files.write(staging.resolve(destination).resolve("00000001.tif"), new byte[10]);
+        }
+        try (StagingArea staging = StagingArea.open(target, "1", true)) {
+            assertTrue(Files.exists(staging.resolve(destination).resolve("00000001.tif")));
+        }
+    }
+
+    @Test
+    public void testInUse() throws Exception {
+        Path target = folder.getRoot().toPath();
+        try (StagingArea staging = StagingArea.open(target, "1", false)) {
+            try {
+                StagingArea.open(target, "1", false);
+                fail("the staging folder is in use");
+            } catch (IOException e) {
+                // expected
+            }
+            // the staging folder of the running export is kept
+            assertTrue(Files.isDirectory(staging.getDirectory()));
+        }
+    }
+
+    @Test
+    public void testOrphans() throws Exception {
+        Path target = folder.getRoot().toPath();
+        Path orphan = target.resolve(StagingArea.PREFIX + "1");
+        Files.createDirectories(orphan.resolve("PPN1"));
+        Path resumable = target.resolve(StagingArea.PREFIX + "2");
+        Files.createDirectories(resumable.resolve("PPN2"));
+        Files.createFile(resumable.resolve(StagingArea.RESUMABLE));
+
+        try (StagingArea staging = StagingArea.open(target, "3", false)) {
+            assertFalse(Files.exists(orphan));
+            assertTrue(Files.exists(resumable.resolve("PPN2")));
+        }
+    }
+
+}
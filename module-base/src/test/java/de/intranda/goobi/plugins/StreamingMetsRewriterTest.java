@@ -0,0 +1,171 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.jdom2.Document;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class StreamingMetsRewriterTest {
+
+    private static final String METS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n"
+            + "  <mets:fileSec>\n"
+            + "    <mets:fileGrp USE=\"PRESENTATION\">\n"
+            + "      <mets:file ID=\"FILE_0001\" MIMETYPE=\"image/tiff\">\n"
+            + "        <mets:FLocat LOCTYPE=\"URL\" xlink:href=\"file:///export/PPN123/00000001.tif\" />\n"
+            + "      </mets:file>\n"
+            + "    </mets:fileGrp>\n"
+            + "  </mets:fileSec>\n"
+            + "  <mets:structMap TYPE=\"PHYSICAL\">\n"
+            + "    <mets:div ID=\"PHYS_0000\" TYPE=\"physSequence\">\n"
+            + "      <mets:div ID=\"PHYS_0001\" TYPE=\"page\">\n"
+            + "        <mets:fptr FILEID=\"FILE_0001\" />\n"
+            + "      </mets:div>\n"
+            + "    </mets:div>\n"
+            + "  </mets:structMap>\n"
+            + "</mets:mets>\n";
+
+    // links outside of the pages of the physical structMap and links to unknown files are kept as they are
+    private static final String LINKS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n"
+            + "  <mets:fileSec>\n"
+            + "    <mets:fileGrp USE=\"PRESENTATION\">\n"
+            + "      <mets:file ID=\"FILE_0001\" MIMETYPE=\"image/tiff\">\n"
+            + "        <mets:FLocat LOCTYPE=\"URL\" xlink:href=\"00000001.tif\" />\n"
+            + "      </mets:file>\n"
+            + "      <mets:file ID=\"FILE_0002\" MIMETYPE=\"image/tiff\">\n"
+            + "        <mets:FLocat LOCTYPE=\"URL\" xlink:href=\"00000002.tif\" />\n"
+            + "      </mets:file>\n"
+            + "    </mets:fileGrp>\n"
+            + "    <mets:fileGrp USE=\"FULLTEXT\">\n"
+            + "      <mets:file ID=\"FILE_0001_FULLTEXT\" MIMETYPE=\"text/xml\">\n"
+            + "        <mets:FLocat LOCTYPE=\"URL\" xlink:href=\"00000001.xml\" />\n"
+            + "      </mets:file>\n"
+            + "    </mets:fileGrp>\n"
+            + "  </mets:fileSec>\n"
+            + "  <mets:structMap TYPE=\"LOGICAL\">\n"
+            + "    <mets:div ID=\"LOG_0000\" TYPE=\"Monograph\">\n"
+            + "      <mets:div ID=\"LOG_0001\" TYPE=\"Chapter\">\n"
+            + "        <mets:fptr FILEID=\"FILE_0002\" />\n"
+            + "      </mets:div>\n"
+            + "    </mets:div>\n"
+            + "  </mets:structMap>\n"
+            + "  <mets:structMap TYPE=\"PHYSICAL\">\n"
+            + "    <mets:div ID=\"PHYS_0000\" TYPE=\"physSequence\">\n"
+            + "      <mets:div ID=\"PHYS_0001\" TYPE=\"page\">\n"
+            + "        <mets:fptr FILEID=\"FILE_0001\" />\n"
+            + "        <mets:fptr FILEID=\"FILE_0001_FULLTEXT\" />\n"
+            + "        <mets:fptr>\n"
+            + "          <mets:area FILEID=\"FILE_0001\" SHAPE=\"RECT\" COORDS=\"0,0,10,10\" />\n"
+            + "        </mets:fptr>\n"
+            + "      </mets:div>\n"
+            + "      <mets:div ID=\"PHYS_0002\" TYPE=\"page\">\n"
+            + "        <mets:fptr FILEID=\"FILE_0002\" />\n"
+            + "        <mets:fptr FILEID=\"FILE_9999\" />\n"
+            + "      </mets:div>\n"
+            + "    </mets:div>\n"
+            + "  </mets:structMap>\n"
+            + "</mets:mets>\n";
+
+    private static String rewrite(StreamingMetsRewriter rewriter) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewriter.rewrite(new ByteArrayInputStream(METS.getBytes(StandardCharsets.UTF_8)), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReplaceIds() throws Exception {
+        StreamingMetsRewriter rewriter = new StreamingMetsRewriter();
+        rewriter.setReplaceIds(true);
+        String result = rewrite(rewriter);
+        assertFalse(result.contains("FILE_0001"));
+        Matcher fileId = Pattern.compile("<mets:file\\s[^>]*\\bID=\"([^\"]+)\"").matcher(result);
+        Matcher fptr = Pattern.compile("FILEID=\"([^\"]+)\"").matcher(result);
+        assertTrue(fileId.find());
+        assertTrue(fptr.find());
+        assertEquals(fileId.group(1), fptr.group(1));
+        assertEquals(4, java.util.UUID.fromString(fptr.group(1)).version());
+    }
+
+    @Test
+    public void testSameLinksAsUuidRewriteStep() throws Exception {
+        StreamingMetsRewriter rewriter = new StreamingMetsRewriter();
+        rewriter.setReplaceIds(true);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        rewriter.rewrite(new ByteArrayInputStream(LINKS.getBytes(StandardCharsets.UTF_8)), streamed);
+
+        Document document = new SAXBuilder().build(new ByteArrayInputStream(LINKS.getBytes(StandardCharsets.UTF_8)));
+        new UuidRewriteStep().apply(document.getRootElement());
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        new XMLOutputter().output(document, pipeline);
+
+        List<String> expected = getLinks(pipeline.toByteArray());
+        assertEquals("[fptr -> FILE_0002, fptr -> 00000001.tif, fptr -> 00000001.xml, area -> FILE_0001, "
+                + "fptr -> 00000002.tif, fptr -> FILE_9999]", expected.toString());
+        assertEquals(expected, getLinks(streamed.toByteArray()));
+    }
+
+    /**
+     * @return each FILEID in document order, resolved to the href of the mets:file with this ID
+     */
+    private static List<String> getLinks(byte[] mets) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        org.w3c.dom.Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(mets));
+        Map<String, String> hrefs = new HashMap<>();
+        NodeList files = document.getElementsByTagNameNS("http://www.loc.gov/METS/", "file");
+        for (int i = 0; i < files.getLength(); i++) {
+            Element file = (Element) files.item(i);
+            // the new IDs are UUIDs
+            UUID.fromString(file.getAttribute("ID"));
+            Element flocat = (Element) file.getElementsByTagNameNS("http://www.loc.gov/METS/", "FLocat").item(0);
+            hrefs.put(file.getAttribute("ID"), flocat.getAttributeNS("http://www.w3.org/1999/xlink", "href"));
+        }
+        List<String> links = new ArrayList<>();
+        NodeList elements = document.getElementsByTagNameNS("http://www.loc.gov/METS/", "*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            if (element.hasAttribute("FILEID")) {
+                String fileId = element.getAttribute("FILEID");
+                links.add(element.getLocalName() + " -> " + hrefs.getOrDefault(fileId, fileId));
+            }
+        }
+        return links;
+    }
+
+    @Test
+    public void testChecksumAndHref() throws Exception {
+        StreamingMetsRewriter rewriter = new StreamingMetsRewriter();
+        rewriter.setChecksumsPerFileGroup(Collections.singletonMap("PRESENTATION",
+                Collections.singletonMap("00000001", "da39a3ee5e6b4b0d3255bfef95601890afd80709")));
+        rewriter.setChecksumType("SHA-1");
+        rewriter.setHrefSearchValue("PPN123");
+        rewriter.setHrefReplacement("PPN123_20201112_083249");
+        String result = rewrite(rewriter);
+        assertTrue(result.contains("CHECKSUM=\"da39a3ee5e6b4b0d3255bfef95601890afd80709\""));
+        assertTrue(result.contains("CHECKSUMTYPE=\"SHA-1\""));
+        assertTrue(result.contains("xlink:href=\"file:///export/PPN123_20201112_083249/00000001.tif\""));
+        assertTrue(result.contains("FILEID=\"FILE_0001\""));
+    }
+
+}
@@ -0,0 +1,143 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TarPackageWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTar() throws Exception {
+        Path tarFile = writePackage(ArchiveFormat.TAR, 1);
+        assertEquals(0, Files.size(tarFile) % (20 * TarPackageWriter.BLOCK_SIZE));
+        try (InputStream in = Files.newInputStream(tarFile)) {
+            assertEntries(readEntries(in));
+        }
+    }
+
+    @Test
+    public void testTarGz() throws Exception {
+        Path tarFile = writePackage(ArchiveFormat.TAR_GZ, 1);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(tarFile))) {
+            assertEntries(readEntries(in));
+        }
+    }
+
+    @Test
+    public void testParallelTarGz() throws Exception {
+        Path tarFile = writePackage(ArchiveFormat.TAR_GZ, 4);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(tarFile))) {
+            assertEntries(readEntries(in));
+        }
+    }
+
+    @Test
+    public void testPaxRecords() {
+        Map<String, String> records = new LinkedHashMap<>();
+        records.put("path", "abc");
+        // " path=abc\n" has 10 bytes, together with the length field 12
+        assertEquals("12 path=abc\n", new String(TarPackageWriter.getPaxRecords(records), StandardCharsets.UTF_8));
+        records.put("path", "a234567");
+        // 14 bytes without the length field, the length field itself makes it 16
+        assertEquals("16 path=a234567\n", new String(TarPackageWriter.getPaxRecords(records), StandardCharsets.UTF_8));
+    }
+
+    private Path writePackage(ArchiveFormat format, int threads) throws IOException {
+        Path generated = folder.newFolder("PPN123").toPath();
+        Files.write(generated.resolve("PPN123_mets.xml"), "<mets/>".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(generated.resolve("empty"));
+        Path image = folder.getRoot().toPath().resolve("00000001.tif");
+        // larger than a block of the parallel compression
+        byte[] content = new byte[ParallelGzipOutputStream.BLOCK_SIZE * 2 + 100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        Files.write(image, content);
+        Path tarFile = folder.getRoot().toPath().resolve("PPN123" + format.getExtension());
+
+        try (TarPackageWriter tar = new TarPackageWriter(tarFile, format, -1, threads)) {
+            tar.addFolder(generated, "PPN123");
+            tar.addFile("PPN123/master/00000001.tif", image, "SHA-1",
+                    checksum -> assertEquals(40, checksum.length()));
+            tar.addFile("PPN123/" + repeat("long_folder_name/", 8) + "\u00dcbersicht.xml",
+                    "<a/>".getBytes(StandardCharsets.UTF_8));
+        }
+        return tarFile;
+    }
+
+    private static void assertEntries(Map<String, byte[]> entries) {
+        assertEquals(4, entries.size());
+        assertEquals("<mets/>", new String(entries.get("PPN123/PPN123_mets.xml"), StandardCharsets.UTF_8));
+        assertTrue(entries.containsKey("PPN123/empty/"));
+        byte[] image = entries.get("PPN123/master/00000001.tif");
+        assertEquals(ParallelGzipOutputStream.BLOCK_SIZE * 2 + 100, image.length);
+        assertEquals((byte) (12345 % 251), image[12345]);
+        assertEquals("<a/>", new String(
+                entries.get("PPN123/" + repeat("long_folder_name/", 8) + "\u00dcbersicht.xml"), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Minimal tar reader that supports the pax path record
+     */
+    private static Map<String, byte[]> readEntries(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        byte[] header = new byte[TarPackageWriter.BLOCK_SIZE];
+        String paxPath = null;
+        while (true) {
+            try {
+                in.readFully(header);
+            } catch (EOFException e) {
+                break;
+            }
+            if (header[0] == 0) {
+                break;
+            }
+            long checksum = 0;
+            for (int i = 0; i < header.length; i++) {
+                checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+            }
+            assertEquals(checksum, Long.parseLong(new String(header, 148, 6, StandardCharsets.US_ASCII), 8));
+            String name = new String(header, 0, 100, StandardCharsets.US_ASCII).replace("\0", "");
+            int size = Integer.parseInt(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+            byte[] data = new byte[size];
+            in.readFully(data);
+            in.readFully(new byte[(TarPackageWriter.BLOCK_SIZE - size % TarPackageWriter.BLOCK_SIZE)
+                    % TarPackageWriter.BLOCK_SIZE]);
+            if (header[156] == 'x') {
+                String record = new String(data, StandardCharsets.UTF_8);
+                paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+            } else {
+                entries.put(paxPath != null ? paxPath : name, data);
+                paxPath = null;
+            }
+        }
+        return entries;
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,66 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class XsltTemplatesCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCacheAndInvalidation() throws Exception {
+        Path xsl = folder.getRoot().toPath().resolve("package_mets.xsl");
+        Files.write(xsl, getStylesheet("first").getBytes(StandardCharsets.UTF_8));
+        XsltTemplatesCache cache = new XsltTemplatesCache(2);
+
+        Templates templates = cache.getTemplates(xsl);
+        assertSame(templates, cache.getTemplates(xsl));
+        assertEquals("first", transform(templates));
+
+        Files.write(xsl, getStylesheet("second").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(xsl, FileTime.fromMillis(Files.getLastModifiedTime(xsl).toMillis() + 2000));
+        Templates changed = cache.getTemplates(xsl);
+        assertNotSame(templates, changed);
+        assertEquals("second", transform(changed));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        XsltTemplatesCache cache = new XsltTemplatesCache(2);
+        for (int i = 0; i < 3; i++) {
+            Path xsl = folder.getRoot().toPath().resolve(i + ".xsl");
+            Files.write(xsl, getStylesheet(String.valueOf(i)).getBytes(StandardCharsets.UTF_8));
+            cache.getTemplates(xsl);
+        }
+        assertEquals(2, cache.size());
+    }
+
+    private static String getStylesheet(String text) {
+        return "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:output method=\"text\"/><xsl:template match=\"/\">" + text + "</xsl:template></xsl:stylesheet>";
+    }
+
+    private static String transform(Templates templates) throws Exception {
+        StringWriter writer = new StringWriter();
+        templates.newTransformer().transform(new StreamSource(new StringReader("<mets/>")), new StreamResult(writer));
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,113 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipPackageWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteFromSources() throws Exception {
+        Path generated = folder.newFolder("PPN123").toPath();
+        Files.write(generated.resolve("PPN123_mets.xml"), "<mets/>".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(generated.resolve("empty"));
+        Path image = folder.getRoot().toPath().resolve("00000001.tif");
+        Files.write(image, "abc".getBytes(StandardCharsets.UTF_8));
+        Path zipFile = folder.getRoot().toPath().resolve("PPN123.zip");
+
+        try (ZipPackageWriter zip = new ZipPackageWriter(zipFile)) {
+            zip.addFolder(generated, "PPN123");
+            zip.addFile("PPN123/master/00000001.tif", image, "SHA-1",
+                    checksum -> assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksum));
+            zip.addFile("PPN123/media/00000001.tif", image, null, null);
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(4, zip.size());
+            assertNotNull(zip.getEntry("PPN123/PPN123_mets.xml"));
+            assertNotNull(zip.getEntry("PPN123/empty/"));
+            assertEquals(3, zip.getEntry("PPN123/master/00000001.tif").getSize());
+        }
+    }
+
+    @Test
+    public void testCompressionPolicy() throws Exception {
+        ZipCompressionPolicy policy = new ZipCompressionPolicy(" TIF, .jp2,", 9);
+        assertTrue(policy.isStored("PPN123/master/00000001.tif"));
+        assertTrue(policy.isStored("00000001.JP2"));
+        assertFalse(policy.isStored("PPN123/PPN123_mets.xml"));
+        assertFalse(policy.isStored("PPN123.tif/alto"));
+
+        Path image = folder.getRoot().toPath().resolve("00000001.tif");
+        Files.write(image, "abc".getBytes(StandardCharsets.UTF_8));
+        Path zipFile = folder.getRoot().toPath().resolve("PPN123.zip");
+        try (ZipPackageWriter zip = new ZipPackageWriter(zipFile, policy)) {
+            zip.addFile("PPN123/00000001.tif", image, "SHA-1",
+                    checksum -> assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksum));
+            zip.addFile("PPN123/00000001.xml", image, null, null);
+            zip.addFile("PPN123/master.tif", "abc".getBytes(StandardCharsets.UTF_8));
+        }
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(ZipEntry.STORED, zip.getEntry("PPN123/00000001.tif").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("PPN123/master.tif").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("PPN123/00000001.xml").getMethod());
+            assertEquals("abc", new String(zip.getInputStream(zip.getEntry("PPN123/00000001.tif")).readAllBytes(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testLocalHeaders() throws Exception {
+        // larger than the copy buffer, the crc is written into the local header after the data
+        byte[] content = new byte[ZipPackageWriter.BUFFER_SIZE * 2 + 17];
+        new Random(42).nextBytes(content);
+        Path image = folder.getRoot().toPath().resolve("00000001.tif");
+        Files.write(image, content);
+        Path zipFile = folder.getRoot().toPath().resolve("PPN123.zip");
+        try (ZipPackageWriter zip = new ZipPackageWriter(zipFile, new ZipCompressionPolicy("tif", 6))) {
+            zip.addDirectory("PPN123");
+            zip.addFile("PPN123/00000001.tif", image, null, null);
+            zip.addFile("PPN123/00000001.bin", image, null, null);
+            zip.addFile("PPN123/PPN123_mets.xml", "<mets/>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // the streaming reader only uses the local headers and verifies the crc of each entry
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(zipFile))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals("PPN123/", entry.getName());
+            entry = zip.getNextEntry();
+            assertEquals("PPN123/00000001.tif", entry.getName());
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertEquals(content.length, entry.getSize());
+            assertTrue(Arrays.equals(content, zip.readAllBytes()));
+            entry = zip.getNextEntry();
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertTrue(Arrays.equals(content, zip.readAllBytes()));
+            entry = zip.getNextEntry();
+            assertEquals("<mets/>", new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            assertEquals(null, zip.getNextEntry());
+        }
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(4, zip.size());
+            assertEquals(content.length, zip.getEntry("PPN123/00000001.bin").getSize());
+        }
+    }
+
+}
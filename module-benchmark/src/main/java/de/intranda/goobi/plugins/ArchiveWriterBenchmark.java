@@ -0,0 +1,73 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Zips a package folder the way createZipPerProcess does. The folder layout, the writer and the compression policy
+ * are varied, the buffer sizes of the writers are fixed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveWriterBenchmark {
+
+	/** number of files and size of each file */
+	@Param({ "1000x16384", "100x1048576", "4x67108864" })
+	private String layout;
+
+	/** sequential uses the ZipPackageWriter, parallel the ParallelZipWriter with four threads */
+	@Param({ "sequential", "parallel" })
+	private String writer;
+
+	/** extensions to store without compression */
+	@Param({ "", "tif" })
+	private String storedExtensions;
+
+	private Path root;
+	private Path folder;
+	private Path zipFile;
+
+	@Setup(Level.Trial)
+	public void createFolder() throws IOException {
+		int[] files = BenchmarkFixtures.parseLayout(layout);
+		root = Files.createTempDirectory("archive-benchmark");
+		folder = BenchmarkFixtures.createFolder(root.resolve("PPN123"), files[0], files[1], "tif");
+		zipFile = root.resolve("PPN123.zip");
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFolder() throws IOException {
+		BenchmarkFixtures.delete(root);
+	}
+
+	@Benchmark
+	public long writeArchive() throws IOException {
+		ZipCompressionPolicy policy = new ZipCompressionPolicy(storedExtensions, -1);
+		try (PackageArchiveWriter archive = "parallel".equals(writer) ? new ParallelZipWriter(zipFile, policy, 4)
+				: new ZipPackageWriter(zipFile, policy)) {
+			archive.addFolder(folder, folder.getFileName().toString());
+		}
+		return Files.size(zipFile);
+	}
+
+}
@@ -0,0 +1,183 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic input data for the benchmarks. All fixtures are generated locally with a fixed seed, so that the
+ * benchmarks run offline and results are comparable between runs.
+ */
+final class BenchmarkFixtures {
+
+	static final String FILE_GROUP = "PRESENTATION";
+
+	private static final long SEED = 4711;
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * Parse a folder layout like <code>1000x16384</code>
+	 * 
+	 * @param layout number of files and size of each file, separated by x
+	 * @return the number of files and the file size
+	 */
+	static int[] parseLayout(String layout) {
+		String[] parts = layout.split("x");
+		return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+	}
+
+	/**
+	 * Create a folder with image like files, half of them with random and half of them with repetitive content
+	 * 
+	 * @param folder the folder to create
+	 * @param files the number of files
+	 * @param size the size of each file
+	 * @param extension the file extension
+	 * @return the folder
+	 * @throws IOException
+	 */
+	static Path createFolder(Path folder, int files, int size, String extension) throws IOException {
+		Files.createDirectories(folder);
+		Random random = new Random(SEED);
+		byte[] content = new byte[size];
+		byte[] text = "<alto:String CONTENT=\"Goobi\" HPOS=\"100\" VPOS=\"200\"/>\n".getBytes(StandardCharsets.US_ASCII);
+		for (int i = 1; i <= files; i++) {
+			if (i % 2 == 0) {
+				random.nextBytes(content);
+			} else {
+				for (int j = 0; j < size; j++) {
+					content[j] = text[j % text.length];
+				}
+			}
+			try (OutputStream out = Files.newOutputStream(folder.resolve(getFileName(i) + "." + extension))) {
+				out.write(content);
+			}
+		}
+		return folder;
+	}
+
+	/**
+	 * Create a METS file with one file group, a physical structure map and the given number of files
+	 * 
+	 * @param files the number of mets:file entries
+	 * @return the METS file content
+	 */
+	static byte[] createMets(int files) {
+		StringBuilder mets = new StringBuilder();
+		mets.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		mets.append("<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n");
+		mets.append("  <mets:fileSec>\n");
+		mets.append("    <mets:fileGrp USE=\"").append(FILE_GROUP).append("\">\n");
+		for (int i = 1; i <= files; i++) {
+			mets.append("      <mets:file ID=\"FILE_").append(getFileName(i)).append("\" MIMETYPE=\"image/tiff\">\n");
+			mets.append("        <mets:FLocat LOCTYPE=\"URL\" xlink:href=\"file:///export/PPN123/")
+					.append(getFileName(i))
+					.append(".tif\"/>\n");
+			mets.append("      </mets:file>\n");
+		}
+		mets.append("    </mets:fileGrp>\n");
+		mets.append("  </mets:fileSec>\n");
+		mets.append("  <mets:structMap TYPE=\"PHYSICAL\">\n");
+		mets.append("    <mets:div ID=\"PHYS_0000\" TYPE=\"physSequence\">\n");
+		for (int i = 1; i <= files; i++) {
+			mets.append("      <mets:div ID=\"PHYS_").append(getFileName(i)).append("\" ORDER=\"").append(i);
+			mets.append("\" TYPE=\"page\">\n");
+			mets.append("        <mets:fptr FILEID=\"FILE_").append(getFileName(i)).append("\"/>\n");
+			mets.append("      </mets:div>\n");
+		}
+		mets.append("    </mets:div>\n");
+		mets.append("  </mets:structMap>\n");
+		mets.append("</mets:mets>\n");
+		return mets.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param files the number of files
+	 * @return checksums of all files of the METS file, grouped by file group
+	 */
+	static Map<String, Map<String, String>> createChecksums(int files) {
+		Map<String, String> checksums = new HashMap<>();
+		for (int i = 1; i <= files; i++) {
+			checksums.put(getFileName(i), getChecksum(i));
+		}
+		Map<String, Map<String, String>> checksumsPerFileGroup = new HashMap<>();
+		checksumsPerFileGroup.put(FILE_GROUP, checksums);
+		return checksumsPerFileGroup;
+	}
+
+	/**
+	 * Create a checksum file in the format of sha1sum
+	 * 
+	 * @param file the checksum file
+	 * @param files the number of entries
+	 * @return the checksum file
+	 * @throws IOException
+	 */
+	static Path createChecksumFile(Path file, int files) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 1; i <= files; i++) {
+				writer.write(getChecksum(i) + "  " + getFileName(i) + ".tif\n");
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * @return a stylesheet listing all files of a METS file, similar to the stylesheets used for package_mets.xsl
+	 */
+	static byte[] createStylesheet() {
+		String xsl = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\"\n"
+				+ "    xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n"
+				+ "  <xsl:output method=\"xml\" indent=\"yes\"/>\n"
+				+ "  <xsl:param name=\"processTitle\"/>\n"
+				+ "  <xsl:key name=\"file\" match=\"mets:file\" use=\"@ID\"/>\n"
+				+ "  <xsl:template match=\"/\">\n"
+				+ "    <package title=\"{$processTitle}\">\n"
+				+ "      <xsl:for-each select=\"//mets:structMap[@TYPE='PHYSICAL']//mets:div[@TYPE='page']\">\n"
+				+ "        <page order=\"{@ORDER}\">\n"
+				+ "          <xsl:value-of select=\"key('file', mets:fptr/@FILEID)/mets:FLocat/@xlink:href\"/>\n"
+				+ "        </page>\n"
+				+ "      </xsl:for-each>\n"
+				+ "    </package>\n"
+				+ "  </xsl:template>\n"
+				+ "</xsl:stylesheet>\n";
+		return xsl.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Delete a folder recursively
+	 * 
+	 * @param folder the folder to delete
+	 * @throws IOException
+	 */
+	static void delete(Path folder) throws IOException {
+		if (!Files.exists(folder)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(folder)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static String getFileName(int i) {
+		return String.format("%08d", i);
+	}
+
+	private static String getChecksum(int i) {
+		return String.format("%040x", (long) i * 2654435761L);
+	}
+
+}
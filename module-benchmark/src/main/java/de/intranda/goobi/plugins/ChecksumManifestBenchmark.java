@@ -0,0 +1,71 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses checksum files in the format of sha1sum, as used for validation and for the METS checksums.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChecksumManifestBenchmark {
+
+	/** number of lines of the checksum file */
+	@Param({ "100", "5000", "50000" })
+	private int files;
+
+	private Path root;
+	private Path checksumFile;
+
+	@Setup(Level.Trial)
+	public void createChecksumFile() throws IOException {
+		root = Files.createTempDirectory("checksum-benchmark");
+		checksumFile = BenchmarkFixtures.createChecksumFile(root.resolve("master.sha1"), files);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteChecksumFile() throws IOException {
+		BenchmarkFixtures.delete(root);
+	}
+
+	/** manifest used for the validation of exported files */
+	@Benchmark
+	public Map<String, String> readManifest() throws IOException {
+		return ChecksumVerifier.readManifest(checksumFile);
+	}
+
+	/** checksums used for the METS file, keyed by file name without extension */
+	@Benchmark
+	public Map<String, String> readChecksumFile() throws IOException {
+		return ExportPackageStepPlugin.readChecksumFile(checksumFile);
+	}
+
+	/** index used by the export for both the validation and the METS checksums */
+	@Benchmark
+	public ChecksumIndex readChecksumIndex() throws IOException {
+		return ChecksumIndex.read(Collections.singletonList(checksumFile), ".sha1", Collections.singleton("master"));
+	}
+
+}
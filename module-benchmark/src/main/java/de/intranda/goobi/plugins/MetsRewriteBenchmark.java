@@ -0,0 +1,100 @@
+package de.intranda.goobi.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.jdom2.Document;
+import org.jdom2.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Applies UUID, checksum and href modifications to a synthetic METS file, once with the JDOM pipeline and once with
+ * the streaming rewriter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetsRewriteBenchmark {
+
+	/** number of mets:file entries */
+	@Param({ "100", "5000", "50000" })
+	private int files;
+
+	private byte[] mets;
+	private Map<String, Map<String, String>> checksums;
+	private Path root;
+	private Path metsFile;
+
+	@Setup(Level.Trial)
+	public void createMets() throws IOException {
+		mets = BenchmarkFixtures.createMets(files);
+		checksums = BenchmarkFixtures.createChecksums(files);
+		root = Files.createTempDirectory("mets-benchmark");
+		metsFile = root.resolve("PPN123_mets.xml");
+	}
+
+	@Setup(Level.Invocation)
+	public void resetMets() throws IOException {
+		// the pipeline rewrites the file in place
+		Files.write(metsFile, mets);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteMets() throws IOException {
+		BenchmarkFixtures.delete(root);
+	}
+
+	@Benchmark
+	public Document pipeline() throws IOException, JDOMException {
+		MetsRewritePipeline pipeline = new MetsRewritePipeline();
+		pipeline.addStep(new UuidRewriteStep());
+		pipeline.addStep(new ChecksumRewriteStep(checksums, "SHA-1"));
+		pipeline.addStep(new HrefReplacementStep("PPN123", "PPN123_20240101"));
+		return pipeline.run(metsFile);
+	}
+
+	@Benchmark
+	public void streamingFile() throws IOException, XMLStreamException {
+		createStreamingRewriter().rewrite(metsFile);
+	}
+
+	@Benchmark
+	public int streamingMemory() throws XMLStreamException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(mets.length + mets.length / 2);
+		createStreamingRewriter().rewrite(new ByteArrayInputStream(mets), out);
+		return out.size();
+	}
+
+	private StreamingMetsRewriter createStreamingRewriter() {
+		StreamingMetsRewriter rewriter = new StreamingMetsRewriter();
+		rewriter.setReplaceIds(true);
+		rewriter.setChecksumsPerFileGroup(checksums);
+		rewriter.setChecksumType("SHA-1");
+		rewriter.setHrefSearchValue("PPN123");
+		rewriter.setHrefReplacement("PPN123_20240101");
+		return rewriter;
+	}
+
+}
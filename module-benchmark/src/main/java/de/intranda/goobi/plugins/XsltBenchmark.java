@@ -0,0 +1,82 @@
+package de.intranda.goobi.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transforms a synthetic METS file with a stylesheet that is either compiled for every transformation or taken from
+ * the {@link XsltTemplatesCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XsltBenchmark {
+
+	/** number of mets:file entries */
+	@Param({ "100", "5000" })
+	private int files;
+
+	private byte[] mets;
+	private Path root;
+	private Path xsl;
+
+	@Setup(Level.Trial)
+	public void createFiles() throws IOException {
+		mets = BenchmarkFixtures.createMets(files);
+		root = Files.createTempDirectory("xslt-benchmark");
+		xsl = root.resolve("package_mets.xsl");
+		Files.write(xsl, BenchmarkFixtures.createStylesheet());
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() throws IOException {
+		BenchmarkFixtures.delete(root);
+	}
+
+	@Benchmark
+	public int compileEachTime() throws TransformerException {
+		Transformer transformer = TransformerFactory.newInstance().newTransformer(new StreamSource(xsl.toFile()));
+		return transform(transformer);
+	}
+
+	@Benchmark
+	public int cachedTemplates() throws IOException, TransformerException {
+		Transformer transformer = XsltTemplatesCache.getInstance().getTemplates(xsl).newTransformer();
+		return transform(transformer);
+	}
+
+	private int transform(Transformer transformer) throws TransformerException {
+		transformer.setParameter("processTitle", "PPN123");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		transformer.transform(new StreamSource(new ByteArrayInputStream(mets)), new StreamResult(out));
+		return out.size();
+	}
+
+}